@@ -0,0 +1,100 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+final class AgentOptions {
+
+    private static final long DEFAULT_INTERVAL = 60;
+    private static final int DEFAULT_AUDIT_BUFFER = 1 << 16;
+    private static final long DEFAULT_AUDIT_SYNC = 1000;
+
+    final Path snapshotFile;
+    final long snapshotInterval;
+    final boolean jmx;
+    final String[] packages;
+    final Path auditFile;
+    final int auditBuffer;
+    final long auditSync;
+
+    private AgentOptions(Path snapshotFile, long snapshotInterval, boolean jmx, String[] packages, Path auditFile,
+                         int auditBuffer, long auditSync) {
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = snapshotInterval;
+        this.jmx = jmx;
+        this.packages = packages;
+        this.auditFile = auditFile;
+        this.auditBuffer = auditBuffer;
+        this.auditSync = auditSync;
+    }
+
+    static AgentOptions parse(String args) {
+        Path snapshotFile = null;
+        long snapshotInterval = DEFAULT_INTERVAL;
+        boolean jmx = true;
+        List<String> packages = new ArrayList<>();
+        Path auditFile = null;
+        int auditBuffer = DEFAULT_AUDIT_BUFFER;
+        long auditSync = DEFAULT_AUDIT_SYNC;
+        if (args != null) {
+            for (String option : args.split(",")) {
+                int eq = option.indexOf('=');
+                String key = (eq < 0 ? option : option.substring(0, eq)).trim();
+                String value = eq < 0 ? "" : option.substring(eq + 1).trim();
+                switch (key) {
+                    case "snapshot":
+                        snapshotFile = Paths.get(value);
+                        break;
+                    case "interval":
+                        snapshotInterval = Long.parseLong(value);
+                        break;
+                    case "jmx":
+                        jmx = Boolean.parseBoolean(value);
+                        break;
+                    case "packages":
+                        for (String root : value.split(";")) {
+                            if (!root.trim().isEmpty()) {
+                                packages.add(root.trim().replace('.', '/') + "/");
+                            }
+                        }
+                        break;
+                    case "audit":
+                        auditFile = Paths.get(value);
+                        break;
+                    case "auditBuffer":
+                        auditBuffer = Integer.parseInt(value);
+                        break;
+                    case "auditSync":
+                        auditSync = Long.parseLong(value);
+                        break;
+                    case "":
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown personaldataflow agent option " + key);
+                }
+            }
+        }
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+        }
+        if (auditSync <= 0) {
+            throw new IllegalArgumentException("Audit sync interval must be positive: " + auditSync);
+        }
+        return new AgentOptions(snapshotFile, snapshotInterval, jmx, packages.toArray(new String[0]), auditFile,
+                auditBuffer, auditSync);
+    }
+
+    boolean includes(String className) {
+        if (packages.length == 0) {
+            return true;
+        }
+        for (String root : packages) {
+            if (className.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class AuditLog {
+
+    private static final Map<String, Integer> sites = new HashMap<>();
+    private static volatile AuditRing ring;
+    private static volatile byte[][] fragments = new byte[0][];
+    private static AuditWriter writer;
+
+    private AuditLog() {
+    }
+
+    public static void record(int site) {
+        AuditRing events = ring;
+        if (events != null) {
+            events.add(site, System.currentTimeMillis());
+        }
+    }
+
+    static synchronized void start(Path file, int capacity, long syncMillis) throws IOException {
+        if (writer != null) {
+            return;
+        }
+        AuditRing events = new AuditRing(capacity);
+        writer = new AuditWriter(events, file, syncMillis);
+        writer.start();
+        ring = events;
+        Runtime.getRuntime().addShutdownHook(new Thread(AuditLog::stop, "personaldataflow-audit-close"));
+    }
+
+    static synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+        ring = null;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("personaldataflow agent: failed to close audit log: " + e);
+        }
+        writer = null;
+    }
+
+    static synchronized int site(String dataRecipientId, String policyURL, String method) {
+        String json = ",\"dataRecipientId\":" + Json.quote(dataRecipientId) + ",\"policyURL\":" + Json.quote(policyURL)
+                + ",\"site\":" + Json.quote(method) + "}\n";
+        Integer site = sites.get(json);
+        if (site == null) {
+            site = fragments.length;
+            byte[][] bytes = Arrays.copyOf(fragments, site + 1);
+            bytes[site] = json.getBytes(StandardCharsets.UTF_8);
+            fragments = bytes;
+            sites.put(json, site);
+        }
+        return site;
+    }
+
+    static byte[] fragment(int site) {
+        return fragments[site];
+    }
+}
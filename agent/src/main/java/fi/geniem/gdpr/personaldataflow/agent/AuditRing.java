@@ -0,0 +1,70 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+final class AuditRing {
+
+    interface Sink {
+
+        void event(int site, long timestamp);
+    }
+
+    private final int mask;
+    private final int[] sites;
+    private final long[] timestamps;
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long head;
+
+    AuditRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Audit buffer size must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        sites = new int[capacity];
+        timestamps = new long[capacity];
+        published = new AtomicLongArray(capacity);
+    }
+
+    void add(int site, long timestamp) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= sites.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        int i = (int) sequence & mask;
+        sites[i] = site;
+        timestamps[i] = timestamp;
+        published.lazySet(i, sequence + 1);
+    }
+
+    int drain(Sink sink, int max) {
+        long sequence = head;
+        int count = 0;
+        while (count < max) {
+            int i = (int) sequence & mask;
+            if (published.get(i) != sequence + 1) {
+                break;
+            }
+            sink.event(sites[i], timestamps[i]);
+            sequence++;
+            count++;
+        }
+        head = sequence;
+        return count;
+    }
+
+    long pending() {
+        return tail.get() - head;
+    }
+
+    long takeDropped() {
+        return dropped.sumThenReset();
+    }
+}
@@ -0,0 +1,172 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+final class AuditWriter implements Runnable, AuditRing.Sink {
+
+    private static final int CHUNK = 16 << 20;
+    private static final int BATCH = 4096;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final byte[] TIMESTAMP = "{\"timestamp\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DROPPED = ",\"dropped\":".getBytes(StandardCharsets.US_ASCII);
+
+    private final AuditRing ring;
+    private final FileChannel channel;
+    private final long syncNanos;
+    private final byte[] digits = new byte[20];
+    private MappedByteBuffer buffer;
+    private long position;
+    private boolean dirty;
+    private long written;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    AuditWriter(AuditRing ring, Path file, long syncMillis) throws IOException {
+        this.ring = ring;
+        this.syncNanos = TimeUnit.MILLISECONDS.toNanos(syncMillis);
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        position = end(channel);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, CHUNK);
+    }
+
+    void start() {
+        thread = new Thread(this, "personaldataflow-audit");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long lastSync = System.nanoTime();
+        try {
+            while (running) {
+                int count = flush();
+                long now = System.nanoTime();
+                if (dirty && now - lastSync >= syncNanos) {
+                    buffer.force();
+                    dirty = false;
+                    lastSync = now;
+                }
+                if (count == 0) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+        } catch (RuntimeException e) {
+            running = false;
+            System.err.println("personaldataflow agent: audit log writer stopped: " + e);
+        }
+    }
+
+    void close() throws IOException {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                System.err.println("personaldataflow agent: audit log writer did not stop, "
+                        + ring.pending() + " records not written");
+                return;
+            }
+        }
+        int count;
+        do {
+            count = flush();
+        } while (count > 0);
+        buffer.force();
+        channel.truncate(position + buffer.position());
+        channel.close();
+    }
+
+    long getWritten() {
+        return written;
+    }
+
+    private int flush() {
+        int count = ring.drain(this, BATCH);
+        long dropped = ring.takeDropped();
+        if (dropped > 0) {
+            ensure(TIMESTAMP.length + DROPPED.length + 2 * digits.length + 2);
+            buffer.put(TIMESTAMP);
+            number(System.currentTimeMillis());
+            buffer.put(DROPPED);
+            number(dropped);
+            buffer.put((byte) '}');
+            buffer.put((byte) '\n');
+            dirty = true;
+        }
+        return count;
+    }
+
+    @Override
+    public void event(int site, long timestamp) {
+        byte[] fragment = AuditLog.fragment(site);
+        ensure(TIMESTAMP.length + digits.length + fragment.length);
+        buffer.put(TIMESTAMP);
+        number(timestamp);
+        buffer.put(fragment);
+        dirty = true;
+        written++;
+    }
+
+    private void number(long value) {
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        buffer.put(digits, i, digits.length - i);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.force();
+        position += buffer.position();
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(CHUNK, bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to extend audit log", e);
+        }
+    }
+
+    private static long end(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        for (long start = size; start > 0; ) {
+            long from = Math.max(0, start - block.capacity());
+            block.clear();
+            block.limit((int) (start - from));
+            while (block.hasRemaining()) {
+                if (channel.read(block, from + block.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') {
+                    return from + i + 1;
+                }
+            }
+            start = from;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,79 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public final class PersonalDataAgent {
+
+    private PersonalDataAgent() {
+    }
+
+    public static void premain(String args, Instrumentation instrumentation) {
+        install(AgentOptions.parse(args), instrumentation, false);
+    }
+
+    public static void agentmain(String args, Instrumentation instrumentation) {
+        install(AgentOptions.parse(args), instrumentation, true);
+    }
+
+    private static void install(AgentOptions options, Instrumentation instrumentation, boolean attached) {
+        boolean audit = false;
+        if (options.auditFile != null) {
+            try {
+                AuditLog.start(options.auditFile, options.auditBuffer, options.auditSync);
+                audit = true;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("personaldataflow agent: failed to open audit log " + options.auditFile + ": " + e);
+            }
+        }
+        TransferTransformer transformer = new TransferTransformer(options, audit);
+        instrumentation.addTransformer(transformer, attached && instrumentation.isRetransformClassesSupported());
+        if (attached && instrumentation.isRetransformClassesSupported() && options.packages.length > 0) {
+            retransform(instrumentation, transformer);
+        }
+        if (options.jmx) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new TransferStatistics(transformer),
+                        new ObjectName(TransferStatistics.NAME));
+            } catch (Exception e) {
+                System.err.println("personaldataflow agent: failed to register " + TransferStatistics.NAME + ": " + e);
+            }
+        }
+        if (options.snapshotFile != null) {
+            SnapshotWriter snapshots = new SnapshotWriter(options.snapshotFile);
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "personaldataflow-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(snapshots, options.snapshotInterval, options.snapshotInterval,
+                    TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(snapshots, "personaldataflow-snapshot-final"));
+        }
+    }
+
+    private static void retransform(Instrumentation instrumentation, TransferTransformer transformer) {
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> type : instrumentation.getAllLoadedClasses()) {
+            if (instrumentation.isModifiableClass(type) && transformer.accepts(type.getName().replace('.', '/'))) {
+                classes.add(type);
+            }
+        }
+        if (classes.isEmpty()) {
+            return;
+        }
+        try {
+            instrumentation.retransformClasses(classes.toArray(new Class<?>[0]));
+        } catch (UnmodifiableClassException | RuntimeException e) {
+            System.err.println("personaldataflow agent: failed to retransform loaded classes: " + e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+final class SnapshotWriter implements Runnable {
+
+    private final Path file;
+
+    SnapshotWriter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void run() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("personaldataflow agent: failed to write snapshot " + file + ": " + e);
+        }
+    }
+
+    void write() throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write("{\"timestamp\":");
+            out.write(Long.toString(System.currentTimeMillis()));
+            out.write(",\"invocations\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> count : TransferCounters.snapshot().entrySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write(Json.quote(count.getKey()));
+                out.write(':');
+                out.write(Long.toString(count.getValue()));
+            }
+            out.write("}}\n");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,60 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class TransferCounters {
+
+    private static final Map<String, Integer> slots = new HashMap<>();
+    private static volatile String[] recipients = new String[0];
+    private static volatile LongAdder[] counters = new LongAdder[0];
+
+    private TransferCounters() {
+    }
+
+    public static void hit(int slot) {
+        counters[slot].increment();
+    }
+
+    static synchronized int slot(String dataRecipientId) {
+        Integer slot = slots.get(dataRecipientId);
+        if (slot == null) {
+            slot = recipients.length;
+            String[] names = Arrays.copyOf(recipients, slot + 1);
+            LongAdder[] adders = Arrays.copyOf(counters, slot + 1);
+            names[slot] = dataRecipientId;
+            adders[slot] = new LongAdder();
+            counters = adders;
+            recipients = names;
+            slots.put(dataRecipientId, slot);
+        }
+        return slot;
+    }
+
+    static Map<String, Long> snapshot() {
+        LongAdder[] adders = counters;
+        String[] names = recipients;
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(adders.length, names.length); i++) {
+            counts.put(names[i], adders[i].sum());
+        }
+        return counts;
+    }
+
+    static long get(String dataRecipientId) {
+        Integer slot;
+        synchronized (TransferCounters.class) {
+            slot = slots.get(dataRecipientId);
+        }
+        return slot != null ? counters[slot].sum() : 0;
+    }
+
+    static void reset() {
+        for (LongAdder adder : counters) {
+            adder.reset();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import java.util.Map;
+
+final class TransferStatistics implements TransferStatisticsMXBean {
+
+    static final String NAME = "fi.geniem.gdpr.personaldataflow:type=TransferStatistics";
+
+    private final TransferTransformer transformer;
+
+    TransferStatistics(TransferTransformer transformer) {
+        this.transformer = transformer;
+    }
+
+    @Override
+    public Map<String, Long> getInvocations() {
+        return TransferCounters.snapshot();
+    }
+
+    @Override
+    public long getTotalInvocations() {
+        long total = 0;
+        for (long count : TransferCounters.snapshot().values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long getInvocations(String dataRecipientId) {
+        return TransferCounters.get(dataRecipientId);
+    }
+
+    @Override
+    public int getInstrumentedClasses() {
+        return transformer.getInstrumentedClasses();
+    }
+
+    @Override
+    public int getInstrumentedMethods() {
+        return transformer.getInstrumentedMethods();
+    }
+
+    @Override
+    public void reset() {
+        TransferCounters.reset();
+    }
+}
@@ -0,0 +1,18 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import java.util.Map;
+
+public interface TransferStatisticsMXBean {
+
+    Map<String, Long> getInvocations();
+
+    long getTotalInvocations();
+
+    long getInvocations(String dataRecipientId);
+
+    int getInstrumentedClasses();
+
+    int getInstrumentedMethods();
+
+    void reset();
+}
@@ -0,0 +1,196 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.nio.charset.StandardCharsets;
+import java.security.ProtectionDomain;
+
+final class TransferTransformer implements ClassFileTransformer {
+
+    private static final String TRANSFER = "Lfi/geniem/gdpr/personaldataflow/PersonalDataTransfer;";
+    private static final byte[] TRANSFER_BYTES = TRANSFER.getBytes(StandardCharsets.UTF_8);
+    private static final String COUNTERS = "fi/geniem/gdpr/personaldataflow/agent/TransferCounters";
+    private static final String AUDIT = "fi/geniem/gdpr/personaldataflow/agent/AuditLog";
+    private static final String[] EXCLUDED = {"java/", "javax/", "jdk/", "sun/", "com/sun/",
+            "fi/geniem/gdpr/personaldataflow/agent/"};
+
+    private final AgentOptions options;
+    private final boolean audit;
+    private int instrumentedClasses;
+    private int instrumentedMethods;
+
+    TransferTransformer(AgentOptions options, boolean audit) {
+        this.options = options;
+        this.audit = audit;
+    }
+
+    boolean accepts(String className) {
+        if (className == null || !options.includes(className)) {
+            return false;
+        }
+        for (String prefix : EXCLUDED) {
+            if (className.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (!accepts(className) || !contains(classfileBuffer, TRANSFER_BYTES)) {
+            return null;
+        }
+        try {
+            ClassReader reader = new ClassReader(classfileBuffer);
+            ClassWriter writer = new ClassWriter(reader, 0);
+            TransferClassVisitor visitor = new TransferClassVisitor(writer, className);
+            reader.accept(visitor, 0);
+            if (visitor.instrumented == 0) {
+                return null;
+            }
+            synchronized (this) {
+                instrumentedClasses++;
+                instrumentedMethods += visitor.instrumented;
+            }
+            return writer.toByteArray();
+        } catch (RuntimeException e) {
+            System.err.println("personaldataflow agent: failed to instrument " + className + ": " + e);
+            return null;
+        }
+    }
+
+    synchronized int getInstrumentedClasses() {
+        return instrumentedClasses;
+    }
+
+    synchronized int getInstrumentedMethods() {
+        return instrumentedMethods;
+    }
+
+    private static boolean contains(byte[] bytes, byte[] pattern) {
+        byte first = pattern[0];
+        int last = bytes.length - pattern.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            if (bytes[i] != first) {
+                continue;
+            }
+            for (int j = 1; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private final class TransferClassVisitor extends ClassVisitor {
+
+        private final String className;
+        private int instrumented;
+
+        TransferClassVisitor(ClassVisitor next, String className) {
+            super(Opcodes.ASM9, next);
+            this.className = className;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                         String[] exceptions) {
+            MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+            if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE | Opcodes.ACC_BRIDGE)) != 0) {
+                return next;
+            }
+            return new TransferMethodVisitor(next, name, descriptor);
+        }
+
+        private final class TransferMethodVisitor extends MethodVisitor {
+
+            private final String name;
+            private final String descriptor;
+            private String dataRecipientId;
+            private String policyURL;
+
+            TransferMethodVisitor(MethodVisitor next, String name, String descriptor) {
+                super(Opcodes.ASM9, next);
+                this.name = name;
+                this.descriptor = descriptor;
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                AnnotationVisitor next = super.visitAnnotation(descriptor, visible);
+                if (!TRANSFER.equals(descriptor)) {
+                    return next;
+                }
+                dataRecipientId = "";
+                policyURL = "";
+                return new AnnotationVisitor(Opcodes.ASM9, next) {
+                    @Override
+                    public void visit(String name, Object value) {
+                        if ("dataRecipientId".equals(name)) {
+                            dataRecipientId = String.valueOf(value);
+                        } else if ("policyURL".equals(name)) {
+                            policyURL = String.valueOf(value);
+                        }
+                        super.visit(name, value);
+                    }
+                };
+            }
+
+            @Override
+            public void visitCode() {
+                super.visitCode();
+                if (dataRecipientId != null) {
+                    push(TransferCounters.slot(dataRecipientId));
+                    super.visitMethodInsn(Opcodes.INVOKESTATIC, COUNTERS, "hit", "(I)V", false);
+                    if (audit) {
+                        push(AuditLog.site(dataRecipientId, policyURL, site()));
+                        super.visitMethodInsn(Opcodes.INVOKESTATIC, AUDIT, "record", "(I)V", false);
+                    }
+                    instrumented++;
+                }
+            }
+
+            @Override
+            public void visitMaxs(int maxStack, int maxLocals) {
+                super.visitMaxs(dataRecipientId != null ? Math.max(maxStack, 1) : maxStack, maxLocals);
+            }
+
+            private String site() {
+                StringBuilder site = new StringBuilder(64);
+                site.append(className.replace('/', '.')).append('#').append(name).append('(');
+                Type[] arguments = Type.getArgumentTypes(descriptor);
+                for (int i = 0; i < arguments.length; i++) {
+                    if (i > 0) {
+                        site.append(", ");
+                    }
+                    site.append(arguments[i].getClassName());
+                }
+                return site.append(')').toString();
+            }
+
+            private void push(int value) {
+                if (value <= 5) {
+                    super.visitInsn(Opcodes.ICONST_0 + value);
+                } else if (value <= Byte.MAX_VALUE) {
+                    super.visitIntInsn(Opcodes.BIPUSH, value);
+                } else if (value <= Short.MAX_VALUE) {
+                    super.visitIntInsn(Opcodes.SIPUSH, value);
+                } else {
+                    super.visitLdcInsn(value);
+                }
+            }
+        }
+    }
+}
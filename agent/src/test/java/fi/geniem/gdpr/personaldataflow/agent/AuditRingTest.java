@@ -0,0 +1,98 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AuditRingTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBeAPowerOfTwo() {
+        new AuditRing(12);
+    }
+
+    @Test
+    public void drainsInOrder() {
+        AuditRing ring = new AuditRing(8);
+        ring.add(1, 10);
+        ring.add(2, 20);
+        ring.add(3, 30);
+        List<Long> events = new ArrayList<>();
+
+        assertEquals(3, ring.pending());
+        assertEquals(2, ring.drain((site, timestamp) -> events.add(site * 1000L + timestamp), 2));
+        assertEquals(Arrays.asList(1010L, 2020L), events);
+        assertEquals(1, ring.pending());
+        assertEquals(1, ring.drain((site, timestamp) -> events.add(site * 1000L + timestamp), 10));
+        assertEquals(Arrays.asList(1010L, 2020L, 3030L), events);
+        assertEquals(0, ring.pending());
+        assertEquals(0, ring.drain((site, timestamp) -> events.add(-1L), 10));
+    }
+
+    @Test
+    public void fullRingDropsAndCounts() {
+        AuditRing ring = new AuditRing(4);
+        for (int i = 0; i < 10; i++) {
+            ring.add(i, i);
+        }
+        List<Integer> sites = new ArrayList<>();
+
+        assertEquals(4, ring.pending());
+        assertEquals(6, ring.takeDropped());
+        assertEquals(0, ring.takeDropped());
+        assertEquals(4, ring.drain((site, timestamp) -> sites.add(site), 10));
+        assertEquals(Arrays.asList(0, 1, 2, 3), sites);
+    }
+
+    @Test
+    public void drainingMakesRoomAgain() {
+        AuditRing ring = new AuditRing(2);
+        List<Integer> sites = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            ring.add(round * 2, 0);
+            ring.add(round * 2 + 1, 0);
+            ring.add(-1, 0);
+            assertEquals(2, ring.drain((site, timestamp) -> sites.add(site), 10));
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), sites);
+        assertEquals(5, ring.takeDropped());
+    }
+
+    @Test
+    public void concurrentWritersLoseNothingButDrops() throws InterruptedException {
+        AuditRing ring = new AuditRing(1024);
+        int writers = 4;
+        int perWriter = 100_000;
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int site = w;
+            threads[w] = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    ring.add(site, i);
+                }
+            });
+            threads[w].start();
+        }
+        long drained = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+            drained += ring.drain((site, timestamp) -> { }, Integer.MAX_VALUE);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        drained += ring.drain((site, timestamp) -> { }, Integer.MAX_VALUE);
+
+        assertEquals((long) writers * perWriter, drained + ring.takeDropped());
+        assertEquals(0, ring.pending());
+    }
+}
@@ -0,0 +1,87 @@
+package fi.geniem.gdpr.personaldataflow.agent;
+
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TransferTransformerTest {
+
+    private static final String TRANSFER = "Lfi/geniem/gdpr/personaldataflow/PersonalDataTransfer;";
+
+    @Test
+    public void transferMethodsCountCalls() throws Exception {
+        byte[] original = transferClass("com/example/Mailer", "mailer-test");
+        TransferTransformer transformer = new TransferTransformer(AgentOptions.parse(null), false);
+
+        byte[] transformed = transformer.transform(null, "com/example/Mailer", null, null, original);
+
+        assertNotNull(transformed);
+        assertEquals(1, transformer.getInstrumentedClasses());
+        assertEquals(1, transformer.getInstrumentedMethods());
+        Class<?> mailer = new DefiningClassLoader().define("com.example.Mailer", transformed);
+        long before = TransferCounters.get("mailer-test");
+        mailer.getMethod("send", String.class).invoke(null, "hello");
+        mailer.getMethod("send", String.class).invoke(null, "again");
+        assertEquals(before + 2, TransferCounters.get("mailer-test"));
+    }
+
+    @Test
+    public void classesWithoutTransfersAreNotTransformed() {
+        byte[] original = transferClass("com/example/Plain", null);
+        TransferTransformer transformer = new TransferTransformer(AgentOptions.parse(null), false);
+
+        assertNull(transformer.transform(null, "com/example/Plain", null, null, original));
+        assertEquals(0, transformer.getInstrumentedClasses());
+    }
+
+    @Test
+    public void retransformReusesAuditSites() {
+        byte[] original = transferClass("com/example/Audited", "audit-test");
+        TransferTransformer transformer = new TransferTransformer(AgentOptions.parse(null), true);
+
+        byte[] first = transformer.transform(null, "com/example/Audited", null, null, original);
+        byte[] second = transformer.transform(null, "com/example/Audited", null, null, original);
+
+        String site = "com.example.Audited#send(java.lang.String)";
+        assertArrayEquals(first, second);
+        assertEquals(AuditLog.site("audit-test", "https://example.com/policy", site),
+                AuditLog.site("audit-test", "https://example.com/policy", site));
+    }
+
+    private static byte[] transferClass(String name, String dataRecipientId) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        MethodVisitor send = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "send",
+                "(Ljava/lang/String;)V", null, null);
+        if (dataRecipientId != null) {
+            AnnotationVisitor transfer = send.visitAnnotation(TRANSFER, false);
+            transfer.visit("dataRecipientId", dataRecipientId);
+            transfer.visit("policyURL", "https://example.com/policy");
+            transfer.visitEnd();
+        }
+        send.visitCode();
+        send.visitInsn(Opcodes.RETURN);
+        send.visitMaxs(0, 1);
+        send.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static final class DefiningClassLoader extends ClassLoader {
+
+        DefiningClassLoader() {
+            super(TransferTransformerTest.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
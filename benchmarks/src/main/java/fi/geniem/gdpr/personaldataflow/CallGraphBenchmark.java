@@ -0,0 +1,125 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CallGraphBenchmark {
+
+    @Param({"2000"})
+    public int methods;
+
+    @Param({"6"})
+    public int depth;
+
+    @Param({"3"})
+    public int fanOut;
+
+    @Param({"0.3"})
+    public double density;
+
+    private MethodTable table;
+    private Numbering<String> personalDataTypes;
+    private Numbering<Transfer> transfers;
+    private List<MethodSummary> summaries;
+    private List<Integer> entrypoints;
+    private CallGraph closedGraph;
+    private PurposeWriter purposes;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        table = new MethodTable();
+        personalDataTypes = new Numbering<>();
+        transfers = new Numbering<>();
+        summaries = new ArrayList<>();
+        entrypoints = new ArrayList<>();
+        int perLayer = Math.max(1, methods / depth);
+        for (int layer = 0; layer < depth; layer++) {
+            for (int i = 0; i < perLayer; i++) {
+                int method = table.intern(name(layer, i));
+                int[] deps = new int[layer + 1 < depth ? fanOut : 0];
+                for (int d = 0; d < deps.length; d++) {
+                    deps[d] = table.intern(name(layer + 1, random.nextInt(perLayer)));
+                }
+                BitSet pd = new BitSet();
+                if (random.nextDouble() < density) {
+                    pd.set(personalDataTypes.number("com.example.model.Entity" + random.nextInt(50)));
+                }
+                BitSet dr = new BitSet();
+                if (layer == depth - 1 && random.nextInt(10) == 0) {
+                    dr.set(transfers.number(new Transfer("https://example.com/privacy", "recipient"
+                            + random.nextInt(3))));
+                }
+                int[] interfaceMethods = {table.intern("com.example.Api" + (i % 20) + "#op" + layer + "()")};
+                summaries.add(new MethodSummary(method, interfaceMethods, IntArrays.sortedUnique(deps, deps.length),
+                        pd, dr));
+                if (layer == 0) {
+                    entrypoints.add(method);
+                }
+            }
+        }
+        closedGraph = build();
+        purposes = new PurposeWriter(closedGraph, personalDataTypes, transfers, new OutputBuffer());
+        purposes.write("com.example.web.Controller", entrypoints);
+    }
+
+    @Benchmark
+    public int closure() {
+        CallGraph graph = build();
+        int reached = 0;
+        for (int entrypoint : entrypoints) {
+            reached += graph.closure(entrypoint).personalData.cardinality();
+        }
+        return reached;
+    }
+
+    @Benchmark
+    public void writePurposes() throws IOException {
+        purposes.write("com.example.web.Controller", entrypoints);
+    }
+
+    @Benchmark
+    public int collectSortedTypes() {
+        Set<String> types = new TreeSet<>();
+        for (int entrypoint : entrypoints) {
+            personalDataTypes.collect(closedGraph.closure(entrypoint).personalData, types);
+        }
+        return types.size();
+    }
+
+    private CallGraph build() {
+        CallGraph graph = new CallGraph(table);
+        for (MethodSummary summary : summaries) {
+            graph.add(summary);
+        }
+        return graph;
+    }
+
+    private static String name(int layer, int index) {
+        return "com.example.service.Service" + index + "#op" + layer + "(java.lang.Object)";
+    }
+}
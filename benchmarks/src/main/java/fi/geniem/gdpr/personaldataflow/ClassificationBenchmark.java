@@ -0,0 +1,111 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.source.util.JavacTask;
+import fi.geniem.gdpr.personaldataflow.benchmark.CorpusGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ClassificationBenchmark {
+
+    @Param({"200"})
+    public int classes;
+
+    @Param({"0.3"})
+    public double density;
+
+    private Path workDir;
+    private StandardJavaFileManager fileManager;
+    private Types types;
+    private List<Element> elements;
+    private TypeClassificationCache warm;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("personaldataflow-bench");
+        List<File> sources = new ArrayList<>();
+        for (Path source : new CorpusGenerator().classes(classes).personalDataDensity(density)
+                .generate(workDir.resolve("src"))) {
+            sources.add(source.toFile());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        fileManager = compiler.getStandardFileManager(null, null, null);
+        JavacTask task = (JavacTask) compiler.getTask(null, fileManager, d -> { },
+                Arrays.asList("-proc:none", "-classpath", System.getProperty("java.class.path")), null,
+                fileManager.getJavaFileObjectsFromFiles(sources));
+        elements = new ArrayList<>();
+        for (Element element : task.analyze()) {
+            if (element instanceof TypeElement) {
+                elements.add(element);
+                elements.addAll(ElementFilter.fieldsIn(element.getEnclosedElements()));
+                for (ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+                    elements.addAll(method.getParameters());
+                }
+            }
+        }
+        types = task.getTypes();
+        warm = new TypeClassificationCache(types);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileManager.close();
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int coldCache() {
+        return classify(new TypeClassificationCache(types));
+    }
+
+    @Benchmark
+    public int warmCache() {
+        return classify(warm);
+    }
+
+    private int classify(TypeClassificationCache cache) {
+        int personalData = 0;
+        for (Element element : elements) {
+            if (cache.isDatabaseEntity(element) && cache.isPersonalData(element)) {
+                personalData++;
+            }
+        }
+        return personalData;
+    }
+}
@@ -0,0 +1,107 @@
+package fi.geniem.gdpr.personaldataflow.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CompilationBenchmark {
+
+    private static final String METRICS = "fi.geniem.gdpr.personaldataflow.PersonalDataMetricsProcessor";
+    private static final String VALIDATOR = "fi.geniem.gdpr.personaldataflow.PersonalDataAnnotationProcessor";
+
+    @Param({"none", "metrics", "validator", "both"})
+    public String processor;
+
+    @Param({"200"})
+    public int classes;
+
+    @Param({"0.3"})
+    public double density;
+
+    private Path workDir;
+    private Path classesDir;
+    private Path outputDir;
+    private List<Path> sources;
+    private JavaCompiler compiler;
+    private StandardJavaFileManager fileManager;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("personaldataflow-bench");
+        classesDir = Files.createDirectories(workDir.resolve("classes"));
+        outputDir = Files.createDirectories(workDir.resolve("purposes"));
+        sources = new CorpusGenerator().classes(classes).personalDataDensity(density).generate(workDir.resolve("src"));
+        compiler = ToolProvider.getSystemJavaCompiler();
+        fileManager = compiler.getStandardFileManager(null, null, null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileManager.close();
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public boolean compile() {
+        List<String> options = new ArrayList<>(Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", classesDir.toString(),
+                "-nowarn", "-Xlint:none", "-Xmaxwarns", "1",
+                "-Apersonaldataflow.outputDir=" + outputDir));
+        switch (processor) {
+            case "none":
+                options.add("-proc:none");
+                break;
+            case "metrics":
+                options.addAll(Arrays.asList("-processor", METRICS));
+                break;
+            case "validator":
+                options.addAll(Arrays.asList("-processor", VALIDATOR));
+                break;
+            default:
+                options.addAll(Arrays.asList("-processor", METRICS + "," + VALIDATOR));
+                break;
+        }
+        Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(toFiles(sources));
+        return compiler.getTask(null, fileManager, d -> { }, options, null, units).call();
+    }
+
+    private static List<java.io.File> toFiles(List<Path> paths) {
+        List<java.io.File> files = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            files.add(path.toFile());
+        }
+        return files;
+    }
+}
@@ -0,0 +1,251 @@
+package fi.geniem.gdpr.personaldataflow.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class CorpusGenerator {
+
+    private static final String BASE = "com.example.synthetic";
+
+    private int classes = 200;
+    private int methods = 8;
+    private int depth = 5;
+    private int fanOut = 3;
+    private int interfaces = 20;
+    private double personalDataDensity = 0.3;
+    private long seed = 42;
+
+    public CorpusGenerator classes(int classes) {
+        this.classes = classes;
+        return this;
+    }
+
+    public CorpusGenerator methods(int methods) {
+        this.methods = methods;
+        return this;
+    }
+
+    public CorpusGenerator depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public CorpusGenerator fanOut(int fanOut) {
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    public CorpusGenerator interfaces(int interfaces) {
+        this.interfaces = interfaces;
+        return this;
+    }
+
+    public CorpusGenerator personalDataDensity(double personalDataDensity) {
+        this.personalDataDensity = personalDataDensity;
+        return this;
+    }
+
+    public CorpusGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: CorpusGenerator <outputDir> [classes=N] [methods=N] [depth=N] [fanOut=N]"
+                    + " [interfaces=N] [density=0..1] [seed=N]");
+            System.exit(2);
+        }
+        CorpusGenerator generator = new CorpusGenerator();
+        for (int i = 1; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            String value = option.length > 1 ? option[1] : "";
+            switch (option[0]) {
+                case "classes": generator.classes(Integer.parseInt(value)); break;
+                case "methods": generator.methods(Integer.parseInt(value)); break;
+                case "depth": generator.depth(Integer.parseInt(value)); break;
+                case "fanOut": generator.fanOut(Integer.parseInt(value)); break;
+                case "interfaces": generator.interfaces(Integer.parseInt(value)); break;
+                case "density": generator.personalDataDensity(Double.parseDouble(value)); break;
+                case "seed": generator.seed(Long.parseLong(value)); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        List<Path> files = generator.generate(Paths.get(args[0]));
+        System.out.println("Generated " + files.size() + " source files");
+    }
+
+    public List<Path> generate(Path dir) throws IOException {
+        Random random = new Random(seed);
+        List<Path> files = new ArrayList<>();
+        int entities = Math.max(1, classes / 4);
+        int recipients = Math.max(1, Math.min(3, classes / 50));
+        int controllers = Math.max(1, classes / 10);
+        int services = Math.max(depth, classes - controllers);
+
+        for (int i = 0; i < entities; i++) {
+            files.add(write(dir, "model", "Entity" + i, entity(i, random.nextDouble() < personalDataDensity)));
+        }
+        for (int i = 0; i < recipients; i++) {
+            files.add(write(dir, "client", "Recipient" + i, recipient(i)));
+        }
+        for (int i = 0; i < interfaces; i++) {
+            files.add(write(dir, "service", "Api" + i, api(i)));
+        }
+
+        List<List<Integer>> layers = new ArrayList<>();
+        for (int layer = 0; layer < depth; layer++) {
+            layers.add(new ArrayList<>());
+        }
+        for (int i = 0; i < services; i++) {
+            layers.get(i % depth).add(i);
+        }
+        for (int i = 0; i < services; i++) {
+            int layer = i % depth;
+            List<Integer> next = layer + 1 < depth ? layers.get(layer + 1) : null;
+            files.add(write(dir, "service", "Service" + i,
+                    service(i, next, entities, recipients, random)));
+        }
+        for (int i = 0; i < controllers; i++) {
+            files.add(write(dir, "web", "Controller" + i, controller(i, layers.get(0), entities, random)));
+        }
+        return files;
+    }
+
+    private String entity(int index, boolean personalData) {
+        StringBuilder out = header("model");
+        out.append("import fi.geniem.gdpr.personaldataflow.PersonalData;\n");
+        out.append("import org.springframework.data.mongodb.core.mapping.Document;\n\n");
+        out.append("@Document\n");
+        if (personalData) {
+            out.append("@PersonalData\n");
+        }
+        out.append("public class Entity").append(index).append(" {\n");
+        out.append("    private String name;\n\n");
+        out.append("    public String getName() {\n        return name;\n    }\n\n");
+        out.append("    public void setName(String name) {\n        this.name = name;\n    }\n");
+        return out.append("}\n").toString();
+    }
+
+    private String recipient(int index) {
+        StringBuilder out = header("client");
+        out.append("import fi.geniem.gdpr.personaldataflow.PersonalDataTransfer;\n\n");
+        out.append("public class Recipient").append(index).append(" {\n");
+        out.append("    @PersonalDataTransfer(dataRecipientId = \"recipient").append(index)
+                .append("\", policyURL = \"https://recipient").append(index).append(".example/privacy\")\n");
+        out.append("    public void send(Object data) {\n    }\n");
+        return out.append("}\n").toString();
+    }
+
+    private String api(int index) {
+        StringBuilder out = header("service");
+        out.append("public interface Api").append(index).append(" {\n");
+        for (int m = 0; m < methods; m++) {
+            out.append("    Object op").append(m).append("(Object input);\n");
+        }
+        return out.append("}\n").toString();
+    }
+
+    private String service(int index, List<Integer> next, int entities, int recipients, Random random) {
+        StringBuilder out = header("service");
+        imports(out);
+        if (index % 2 == 0) {
+            out.append("@PersonalDataHandler\n");
+        }
+        out.append("public class Service").append(index);
+        if (interfaces > 0) {
+            out.append(" implements Api").append(index % interfaces);
+        }
+        out.append(" {\n");
+        List<String> targets = fields(out, next, random);
+        out.append("    private Entity").append(random.nextInt(entities)).append(" current;\n");
+        if (next == null) {
+            out.append("    private Recipient").append(index % recipients).append(" recipient;\n");
+        }
+        out.append('\n');
+        for (int m = 0; m < methods; m++) {
+            if (interfaces > 0) {
+                out.append("    @Override\n");
+            }
+            out.append("    public Object op").append(m).append("(Object input) {\n");
+            body(out, entities, random);
+            calls(out, targets, random);
+            if (next == null) {
+                out.append("        recipient.send(local);\n");
+            }
+            out.append("        return local.getName();\n    }\n\n");
+        }
+        return out.append("}\n").toString();
+    }
+
+    private String controller(int index, List<Integer> next, int entities, Random random) {
+        StringBuilder out = header("web");
+        imports(out);
+        out.append("import org.springframework.web.bind.annotation.RequestMapping;\n\n");
+        out.append("public class Controller").append(index).append(" {\n");
+        List<String> targets = fields(out, next, random);
+        out.append('\n');
+        for (int m = 0; m < methods; m++) {
+            out.append("    @RequestMapping(\"/c").append(index).append("/m").append(m).append("\")\n");
+            out.append("    public Object handle").append(m).append("(Object input) {\n");
+            body(out, entities, random);
+            calls(out, targets, random);
+            out.append("        return local.getName();\n    }\n\n");
+        }
+        return out.append("}\n").toString();
+    }
+
+    private List<String> fields(StringBuilder out, List<Integer> next, Random random) {
+        List<String> targets = new ArrayList<>();
+        if (next == null || next.isEmpty()) {
+            return targets;
+        }
+        for (int f = 0; f < fanOut; f++) {
+            int target = next.get(random.nextInt(next.size()));
+            String type = interfaces > 0 && random.nextBoolean() ? "Api" + target % interfaces : "Service" + target;
+            out.append("    private ").append(type).append(" target").append(f).append(";\n");
+            targets.add("target" + f);
+        }
+        return targets;
+    }
+
+    private void body(StringBuilder out, int entities, Random random) {
+        String type = "Entity" + random.nextInt(entities);
+        out.append("        ").append(type).append(" local = new ").append(type).append("();\n");
+        out.append("        List<").append(type).append("> items = new ArrayList<>();\n");
+        out.append("        items.add(local);\n");
+        out.append("        local.setName(String.valueOf(input));\n");
+    }
+
+    private void calls(StringBuilder out, List<String> targets, Random random) {
+        for (String target : targets) {
+            out.append("        ").append(target).append(".op").append(random.nextInt(methods)).append("(local);\n");
+        }
+    }
+
+    private static StringBuilder header(String pkg) {
+        return new StringBuilder(1024).append("package ").append(BASE).append('.').append(pkg).append(";\n\n");
+    }
+
+    private static void imports(StringBuilder out) {
+        out.append("import ").append(BASE).append(".client.*;\n");
+        out.append("import ").append(BASE).append(".model.*;\n");
+        out.append("import ").append(BASE).append(".service.*;\n");
+        out.append("import fi.geniem.gdpr.personaldataflow.PersonalDataHandler;\n");
+        out.append("import java.util.ArrayList;\n");
+        out.append("import java.util.List;\n\n");
+    }
+
+    private static Path write(Path dir, String pkg, String name, String source) throws IOException {
+        Path file = dir.resolve((BASE + '.' + pkg).replace('.', '/')).resolve(name + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
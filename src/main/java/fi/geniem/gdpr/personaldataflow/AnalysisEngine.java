@@ -0,0 +1,275 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileManager;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+final class AnalysisEngine implements TaskListener {
+
+    private static final Context.Key<AnalysisEngine> KEY = new Context.Key<>();
+    private static final int DEFAULT_REPORT_TOP = 20;
+
+    private final Trees trees;
+    private final JavaFileManager fileManager;
+    private final Messager messager;
+    private final TypeClassificationCache classifications;
+    private final DeclaredTypes declaredTypes;
+    private final TypeMentions typeMentions = new TypeMentions();
+    private final AnalysisTracker tracker = new AnalysisTracker();
+    private final List<TreeAnalysis> analyses = new ArrayList<>();
+    private final Traversal traversal = new Traversal();
+    private final SourceScope scope;
+    private final Path reportFile;
+    private final CompilationReport report;
+    private TreeAnalysis[] active = new TreeAnalysis[0];
+
+    private AnalysisEngine(ProcessingEnvironment processingEnv, JavacProcessingEnvironment javacEnv) {
+        trees = Trees.instance(javacEnv);
+        fileManager = javacEnv.getContext().get(JavaFileManager.class);
+        messager = processingEnv.getMessager();
+        classifications = new TypeClassificationCache(processingEnv.getTypeUtils());
+        declaredTypes = new DeclaredTypes(processingEnv.getTypeUtils(), typeMentions);
+        Map<String, String> options = processingEnv.getOptions();
+        scope = new SourceScope(options.get(PersonalDataMetricsProcessor.INCLUDE_OPTION),
+                options.get(PersonalDataMetricsProcessor.EXCLUDE_OPTION),
+                options.get(PersonalDataMetricsProcessor.PACKAGES_OPTION));
+        String file = options.get(PersonalDataMetricsProcessor.REPORT_OPTION);
+        reportFile = file != null ? Paths.get(file) : null;
+        report = file != null ? new CompilationReport(Integer.parseInt(
+                options.getOrDefault(PersonalDataMetricsProcessor.REPORT_TOP_OPTION, "" + DEFAULT_REPORT_TOP)))
+                : null;
+    }
+
+    static AnalysisEngine instance(ProcessingEnvironment processingEnv) {
+        JavacProcessingEnvironment javacEnv = unwrap(processingEnv);
+        Context context = javacEnv.getContext();
+        AnalysisEngine engine = context.get(KEY);
+        if (engine == null) {
+            engine = new AnalysisEngine(processingEnv, javacEnv);
+            context.put(KEY, engine);
+            JavacTask.instance(javacEnv).addTaskListener(engine);
+        }
+        return engine;
+    }
+
+    private static JavacProcessingEnvironment unwrap(ProcessingEnvironment processingEnv) {
+        Object env = processingEnv;
+        for (int i = 0; i < 8 && env != null; i++) {
+            if (env instanceof JavacProcessingEnvironment) {
+                return (JavacProcessingEnvironment) env;
+            }
+            env = delegate(Proxy.isProxyClass(env.getClass()) ? Proxy.getInvocationHandler(env) : env);
+        }
+        throw new IllegalStateException("personaldataflow processors require javac, got "
+                + processingEnv.getClass().getName());
+    }
+
+    private static Object delegate(Object wrapper) {
+        for (Class<?> c = wrapper.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (ProcessingEnvironment.class.isAssignableFrom(field.getType())) {
+                    try {
+                        field.setAccessible(true);
+                        return field.get(wrapper);
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    URL[] getClassPath(StandardLocation... locations) {
+        List<URL> urls = new ArrayList<>();
+        if (fileManager instanceof StandardJavaFileManager) {
+            for (StandardLocation location : locations) {
+                Iterable<? extends File> files = ((StandardJavaFileManager) fileManager).getLocation(location);
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    try {
+                        urls.add(file.toURI().toURL());
+                    } catch (MalformedURLException e) {
+                        messager.printMessage(Kind.WARNING, "Ignoring class path entry " + file + ": " + e);
+                    }
+                }
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    void add(TreeAnalysis analysis) {
+        analyses.add(analysis);
+    }
+
+    Trees getTrees() {
+        return trees;
+    }
+
+    TypeClassificationCache getClassifications() {
+        return classifications;
+    }
+
+    DeclaredTypes getDeclaredTypes() {
+        return declaredTypes;
+    }
+
+    TypeMentions getTypeMentions() {
+        return typeMentions;
+    }
+
+    AnalysisTracker getTracker() {
+        return tracker;
+    }
+
+    SourceScope getScope() {
+        return scope;
+    }
+
+    CompilationReport getReport() {
+        return report;
+    }
+
+    @Override
+    public void started(TaskEvent task) {
+    }
+
+    @Override
+    public void finished(TaskEvent task) {
+        if (task.getKind() == TaskEvent.Kind.ANALYZE) {
+            long start = System.nanoTime();
+            analyze(task);
+            if (report != null) {
+                report.analyzed(task.getSourceFile().toUri().toString(), System.nanoTime() - start);
+            }
+        }
+        if (tracker.finished(task)) {
+            long start = System.nanoTime();
+            for (TreeAnalysis analysis : analyses) {
+                analysis.compilationFinished();
+            }
+            if (report != null) {
+                report.phase("compilationFinished", System.nanoTime() - start);
+                writeReport();
+            }
+        }
+    }
+
+    private void writeReport() {
+        report.set("classification.calls", classifications.getCalls());
+        report.set("classification.hits", classifications.getHits());
+        report.set("classification.misses", classifications.getMisses());
+        report.set("classification.types", classifications.size());
+        report.set("declarationLookups", declaredTypes.getLookups());
+        report.set("typeMentions.walks", typeMentions.getWalks());
+        report.set("typeMentions.hits", typeMentions.getHits());
+        report.set("typeMentions.types", typeMentions.size());
+        try {
+            report.write(reportFile);
+        } catch (IOException e) {
+            messager.printMessage(Kind.WARNING, "Failed to write compilation report: " + e.toString());
+        }
+    }
+
+    private void analyze(TaskEvent task) {
+        if (!scope.includes(task.getCompilationUnit())) {
+            if (report != null) {
+                report.count("skippedEvents", 1);
+            }
+            return;
+        }
+        List<TreeAnalysis> scanning = new ArrayList<>(analyses.size());
+        for (TreeAnalysis analysis : analyses) {
+            if (analysis.startUnit(task)) {
+                scanning.add(analysis);
+            }
+        }
+        if (!scanning.isEmpty()) {
+            long start = System.nanoTime();
+            active = scanning.toArray(active);
+            declaredTypes.clear();
+            traversal.position = 0;
+            task.getCompilationUnit().accept(traversal, null);
+            active = new TreeAnalysis[0];
+            if (report != null) {
+                report.phase("traversal", System.nanoTime() - start);
+            }
+        }
+        long start = System.nanoTime();
+        for (TreeAnalysis analysis : analyses) {
+            analysis.finishUnit(task);
+        }
+        if (report != null) {
+            report.phase("finishUnit", System.nanoTime() - start);
+        }
+    }
+
+    private final class Traversal extends TreeScanner<Void, Void> {
+
+        private int position;
+
+        @Override
+        public Void scan(Tree tree, Void aVoid) {
+            if (tree == null) {
+                return null;
+            }
+            int at = ++position;
+            if (report != null) {
+                report.node(tree.getKind());
+            }
+            for (TreeAnalysis analysis : active) {
+                analysis.enter(tree, at);
+            }
+            tree.accept(this, aVoid);
+            for (int i = active.length - 1; i >= 0; i--) {
+                active[i].exit(tree, at);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitMethodInvocation(MethodInvocationTree inv, Void aVoid) {
+            scan(inv.getTypeArguments(), aVoid);
+            scan(inv.getMethodSelect(), aVoid);
+            int index = 0;
+            for (ExpressionTree argument : inv.getArguments()) {
+                for (TreeAnalysis analysis : active) {
+                    analysis.enterArgument(inv, argument, index);
+                }
+                scan(argument, aVoid);
+                for (int i = active.length - 1; i >= 0; i--) {
+                    active[i].exitArgument(inv, argument, index);
+                }
+                index++;
+            }
+            return null;
+        }
+    }
+}
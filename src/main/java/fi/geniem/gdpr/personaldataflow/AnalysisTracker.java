@@ -0,0 +1,78 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TaskEvent;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+
+import javax.lang.model.element.TypeElement;
+import java.util.HashSet;
+import java.util.Set;
+
+final class AnalysisTracker {
+
+    private static final boolean COMPILATION_EVENTS = hasCompilationEvents();
+
+    private final Set<String> pending = new HashSet<>();
+    private final Set<String> sourceFiles = new HashSet<>();
+    private boolean analyzed;
+    private boolean done;
+
+    boolean isDone() {
+        return done;
+    }
+
+    Set<String> getSourceFiles() {
+        return sourceFiles;
+    }
+
+    boolean finished(TaskEvent task) {
+        switch (task.getKind()) {
+            case ENTER:
+                sourceFiles.add(task.getSourceFile().toUri().toString());
+                for (Tree t : task.getCompilationUnit().getTypeDecls()) {
+                    if (t instanceof ClassTree) {
+                        Symbol sym = TreeInfo.symbolFor((JCTree) t);
+                        if (sym != null) {
+                            pending.add(sym.flatName().toString());
+                        }
+                    }
+                }
+                return false;
+            case ANALYZE:
+                TypeElement type = task.getTypeElement();
+                if (type instanceof Symbol) {
+                    pending.remove(((Symbol) type).flatName().toString());
+                }
+                analyzed = true;
+                if (COMPILATION_EVENTS || !pending.isEmpty()) {
+                    return false;
+                }
+                break;
+            default:
+                if (!"COMPILATION".equals(task.getKind().name())) {
+                    return false;
+                }
+                pending.clear();
+                analyzed = true;
+                break;
+        }
+        if (!analyzed) {
+            return false;
+        }
+        analyzed = false;
+        done = true;
+        return true;
+    }
+
+    private static boolean hasCompilationEvents() {
+        for (TaskEvent.Kind kind : TaskEvent.Kind.values()) {
+            if ("COMPILATION".equals(kind.name())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
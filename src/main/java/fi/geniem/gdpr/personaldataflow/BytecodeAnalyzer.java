@@ -0,0 +1,197 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import fi.geniem.gdpr.personaldataflow.ClassSummarizer.MethodResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public final class BytecodeAnalyzer {
+
+    private static final int SLICE = 32;
+
+    private final Path outputDir;
+    private final ClassSummarizer summarizer;
+    private final ClassRepository repository;
+    private final ForkJoinPool pool;
+
+    private final MethodTable methods = new MethodTable();
+    private final Numbering<String> personalDataTypes = new Numbering<>();
+    private final Numbering<Transfer> transfers = new Numbering<>();
+    private final CallGraph graph = new CallGraph(methods);
+    private final OutputBuffer output = new OutputBuffer();
+    private final PurposeWriter purposes = new PurposeWriter(graph, personalDataTypes, transfers, output);
+    private final Map<String, Set<Integer>> controllers = new LinkedHashMap<>();
+
+    BytecodeAnalyzer(Path outputDir, URL[] classpath, int parallelism) {
+        this.outputDir = outputDir;
+        this.repository = new ClassRepository(classpath);
+        this.summarizer = new ClassSummarizer(repository);
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<URL> classpath = new ArrayList<>();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-"); i += 2) {
+            if (i + 1 == args.length) {
+                usage();
+            }
+            if ("-cp".equals(args[i]) || "-classpath".equals(args[i])) {
+                for (String entry : args[i + 1].split(File.pathSeparator)) {
+                    classpath.add(Paths.get(entry).toUri().toURL());
+                }
+            } else if ("-threads".equals(args[i])) {
+                parallelism = Integer.parseInt(args[i + 1]);
+            } else {
+                usage();
+            }
+        }
+        if (args.length - i < 2) {
+            usage();
+        }
+        List<Path> inputs = new ArrayList<>();
+        for (int j = i + 1; j < args.length; j++) {
+            inputs.add(Paths.get(args[j]));
+        }
+        BytecodeAnalyzer analyzer = new BytecodeAnalyzer(Paths.get(args[i]), classpath.toArray(new URL[0]),
+                parallelism);
+        analyzer.analyze(inputs);
+        System.out.println("BytecodeAnalyzer analyzed " + analyzer.graph.size() + " methods, wrote "
+                + analyzer.output.getFilesWritten() + " files (" + analyzer.output.getBytesWritten() + " bytes), "
+                + analyzer.output.getFilesUnchanged() + " unchanged");
+    }
+
+    private static void usage() {
+        System.err.println("usage: BytecodeAnalyzer [-cp <classpath>] [-threads <n>] <outputDir> <jar|dir>...");
+        System.exit(2);
+    }
+
+    void analyze(List<Path> inputs) throws IOException {
+        List<ClassFile> files = new ArrayList<>();
+        List<ZipFile> archives = new ArrayList<>();
+        try {
+            for (Path input : inputs) {
+                if (Files.isDirectory(input)) {
+                    try (Stream<Path> walk = Files.walk(input)) {
+                        walk.filter(p -> p.toString().endsWith(".class")).sorted()
+                                .forEach(p -> files.add(() -> Files.readAllBytes(p)));
+                    }
+                } else {
+                    ZipFile zip = new ZipFile(input.toFile());
+                    archives.add(zip);
+                    for (ZipEntry entry : Collections.list(zip.entries())) {
+                        if (!entry.isDirectory() && entry.getName().endsWith(".class")
+                                && !entry.getName().startsWith("META-INF/")) {
+                            files.add(() -> read(zip, entry));
+                        }
+                    }
+                }
+            }
+
+            ClassModel[] models = new ClassModel[files.size()];
+            parallel(models.length, i -> {
+                try {
+                    models[i] = ClassModel.read(files.get(i).read(), true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            for (ClassModel model : models) {
+                repository.add(model);
+            }
+
+            List<List<MethodResult>> results = new ArrayList<>(Collections.nCopies(models.length, null));
+            parallel(models.length, i -> results.set(i, summarizer.analyze(models[i])));
+
+            for (List<MethodResult> result : results) {
+                for (MethodResult method : result) {
+                    define(method);
+                }
+            }
+            for (Map.Entry<String, Set<Integer>> controller : controllers.entrySet()) {
+                purposes.write(controller.getKey(), controller.getValue());
+                output.writeTo(outputDir.resolve(controller.getKey() + ".json"));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+            repository.close();
+            for (ZipFile zip : archives) {
+                zip.close();
+            }
+        }
+    }
+
+    private void parallel(int size, IntConsumer body) {
+        pool.invoke(new Slice(0, size, body));
+    }
+
+    private void define(MethodResult result) {
+        int method = methods.intern(result.name);
+        if (result.controller != null) {
+            controllers.computeIfAbsent(result.controller, k -> new HashSet<>()).add(method);
+        }
+        if (result.dependencies != null && !graph.contains(method)) {
+            graph.add(result.summary(methods, personalDataTypes, transfers));
+        }
+    }
+
+    private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream in = zip.getInputStream(entry)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(entry.getSize(), 0));
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                bytes.write(buffer, 0, n);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    private interface ClassFile {
+
+        byte[] read() throws IOException;
+    }
+
+    private static final class Slice extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        Slice(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SLICE) {
+                for (int i = from; i < to; i++) {
+                    body.accept(i);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Slice(from, middle, body), new Slice(middle, to, body));
+            }
+        }
+    }
+}
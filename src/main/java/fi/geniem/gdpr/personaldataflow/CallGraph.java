@@ -0,0 +1,448 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.util.*;
+
+final class CallGraph {
+
+    private static final int[] SPILLED = new int[0];
+
+    private final MethodTable methods;
+    private final SpillStore spill;
+    private long resident;
+
+    private int[][] dependencies = new int[1024][];
+    private int[][] implementations = new int[1024][];
+    private final List<BitSet> methodPersonalData = new ArrayList<>();
+    private final List<BitSet> methodDataRecipients = new ArrayList<>();
+    private final BitSet pinned = new BitSet();
+    private int defined;
+
+    private int[] offsets;
+    private int[] targets;
+    private Summary[] summaries;
+    private int[] order;
+    private int[] lowLink;
+    private boolean[] onStack;
+    private int visited;
+    private long closures;
+    private long expansions;
+
+    CallGraph(MethodTable methods) {
+        this(methods, null);
+    }
+
+    CallGraph(MethodTable methods, SpillStore spill) {
+        this.methods = methods;
+        this.spill = spill;
+    }
+
+    MethodTable getMethods() {
+        return methods;
+    }
+
+    boolean contains(int method) {
+        return method < dependencies.length && dependencies[method] != null;
+    }
+
+    int size() {
+        return defined;
+    }
+
+    long getClosures() {
+        return closures;
+    }
+
+    long getExpansions() {
+        return expansions;
+    }
+
+    void add(MethodSummary summary) {
+        offsets = null;
+        ensureCapacity(Math.max(summary.method, max(summary.interfaceMethods)) + 1);
+        if (dependencies[summary.method] == null) {
+            defined++;
+        }
+        dependencies[summary.method] = summary.dependencies;
+        set(methodPersonalData, summary.method, summary.personalData);
+        set(methodDataRecipients, summary.method, summary.dataRecipients);
+        for (int iname : summary.interfaceMethods) {
+            int[] impls = implementations[iname];
+            implementations[iname] = impls == null ? new int[]{summary.method} : IntArrays.append(impls, summary.method);
+        }
+        if (spill != null) {
+            resident += 64 + 4 * summary.dependencies.length
+                    + (summary.personalData.length() + summary.dataRecipients.length()) / 8;
+            if (resident > spill.getBudget()) {
+                spillResident();
+            }
+        }
+    }
+
+    void pin(int method) {
+        pinned.set(method);
+    }
+
+    void unpin(int method) {
+        pinned.clear(method);
+    }
+
+    private void spillResident() {
+        for (int method = 0; method < dependencies.length; method++) {
+            int[] deps = dependencies[method];
+            if (deps != null && deps != SPILLED && !pinned.get(method)) {
+                spill.write(method, deps, get(methodPersonalData, method), get(methodDataRecipients, method));
+                dependencies[method] = SPILLED;
+                methodPersonalData.set(method, null);
+                methodDataRecipients.set(method, null);
+            }
+        }
+        resident = 0;
+    }
+
+    int[] edges(int method) {
+        if (method >= dependencies.length) {
+            return null;
+        }
+        int[] impls = implementations[method];
+        int[] deps = dependencies(method);
+        if (impls == null || deps == null) {
+            return impls != null ? impls : deps;
+        }
+        int[] row = Arrays.copyOf(impls, impls.length + deps.length);
+        System.arraycopy(deps, 0, row, impls.length, deps.length);
+        return row;
+    }
+
+    BitSet personalData(int method) {
+        return isSpilled(method) ? spill.personalData(method) : get(methodPersonalData, method);
+    }
+
+    BitSet dataRecipients(int method) {
+        return isSpilled(method) ? spill.dataRecipients(method) : get(methodDataRecipients, method);
+    }
+
+    private boolean isSpilled(int method) {
+        return method < dependencies.length && dependencies[method] == SPILLED;
+    }
+
+    private int[] dependencies(int method) {
+        int[] deps = dependencies[method];
+        return deps == SPILLED ? spill.dependencies(method) : deps;
+    }
+
+    Summary closure(int entrypoint) {
+        freeze();
+        if (summaries[entrypoint] == null) {
+            closures++;
+            condense(entrypoint);
+        }
+        return summaries[entrypoint];
+    }
+
+    BitSet reachable(Collection<Integer> entrypoints) {
+        freeze();
+        BitSet used = new BitSet(methods.size());
+        int[] queue = new int[16];
+        int tail = 0;
+        for (int entrypoint : entrypoints) {
+            if (!used.get(entrypoint)) {
+                used.set(entrypoint);
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, tail * 2);
+                }
+                queue[tail++] = entrypoint;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int key = queue[head];
+            for (int i = offsets[key]; i < offsets[key + 1]; i++) {
+                int d = targets[i];
+                if (!used.get(d)) {
+                    used.set(d);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = d;
+                }
+            }
+        }
+        return used;
+    }
+
+    boolean reaches(Collection<Integer> entrypoints, BitSet targets) {
+        if (targets.isEmpty()) {
+            return false;
+        }
+        freeze();
+        BitSet used = new BitSet(methods.size());
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        for (int entrypoint : entrypoints) {
+            if (!used.get(entrypoint)) {
+                used.set(entrypoint);
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, tail * 2);
+                }
+                queue[tail++] = entrypoint;
+            }
+        }
+        while (head < tail) {
+            int key = queue[head++];
+            if (targets.get(key)) {
+                return true;
+            }
+            for (int i = offsets[key]; i < offsets[key + 1]; i++) {
+                int d = this.targets[i];
+                if (!used.get(d)) {
+                    used.set(d);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = d;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void freeze() {
+        if (offsets != null) {
+            return;
+        }
+        int n = methods.size();
+        ensureCapacity(n);
+        offsets = new int[n + 1];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = total;
+            if (implementations[i] != null) {
+                total += implementations[i].length;
+            }
+            if (dependencies[i] == SPILLED) {
+                total += spill.dependencyCount(i);
+            } else if (dependencies[i] != null) {
+                total += dependencies[i].length;
+            }
+        }
+        offsets[n] = total;
+        targets = new int[total];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (implementations[i] != null) {
+                System.arraycopy(implementations[i], 0, targets, k, implementations[i].length);
+                k += implementations[i].length;
+            }
+            if (dependencies[i] == SPILLED) {
+                k += spill.copyDependencies(i, targets, k);
+            } else if (dependencies[i] != null) {
+                System.arraycopy(dependencies[i], 0, targets, k, dependencies[i].length);
+                k += dependencies[i].length;
+            }
+        }
+        summaries = new Summary[n];
+        order = new int[n];
+        Arrays.fill(order, -1);
+        lowLink = new int[n];
+        onStack = new boolean[n];
+        visited = 0;
+    }
+
+    private void condense(int root) {
+        int[] frameNode = new int[16];
+        int[] frameCursor = new int[16];
+        int[] component = new int[16];
+        int depth = 0;
+        int componentSize = 0;
+
+        expansions++;
+        order[root] = visited;
+        lowLink[root] = visited++;
+        onStack[root] = true;
+        component[componentSize++] = root;
+        frameNode[depth] = root;
+        frameCursor[depth++] = offsets[root];
+
+        while (depth > 0) {
+            int node = frameNode[depth - 1];
+            int cursor = frameCursor[depth - 1];
+            if (cursor < offsets[node + 1]) {
+                frameCursor[depth - 1] = cursor + 1;
+                int next = targets[cursor];
+                if (summaries[next] != null) {
+                    continue;
+                }
+                if (order[next] < 0) {
+                    expansions++;
+                    order[next] = visited;
+                    lowLink[next] = visited++;
+                    onStack[next] = true;
+                    if (componentSize == component.length) {
+                        component = Arrays.copyOf(component, componentSize * 2);
+                    }
+                    component[componentSize++] = next;
+                    if (depth == frameNode.length) {
+                        frameNode = Arrays.copyOf(frameNode, depth * 2);
+                        frameCursor = Arrays.copyOf(frameCursor, depth * 2);
+                    }
+                    frameNode[depth] = next;
+                    frameCursor[depth++] = offsets[next];
+                } else if (onStack[next]) {
+                    lowLink[node] = Math.min(lowLink[node], order[next]);
+                }
+                continue;
+            }
+
+            depth--;
+            if (depth > 0) {
+                int parent = frameNode[depth - 1];
+                lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+            }
+            if (lowLink[node] == order[node]) {
+                int start = componentSize;
+                do {
+                    start--;
+                    onStack[component[start]] = false;
+                } while (component[start] != node);
+                summarize(component, start, componentSize);
+                componentSize = start;
+            }
+        }
+    }
+
+    private void summarize(int[] component, int from, int to) {
+        Summary.Builder builder = new Summary.Builder();
+        for (int m = from; m < to; m++) {
+            int member = component[m];
+            BitSet pd = personalData(member);
+            if (pd != null) {
+                builder.addPersonalData(pd);
+            }
+            BitSet dr = dataRecipients(member);
+            if (dr != null) {
+                builder.addDataRecipients(dr);
+            }
+            for (int i = offsets[member]; i < offsets[member + 1]; i++) {
+                Summary child = summaries[targets[i]];
+                if (child != null) {
+                    builder.add(child);
+                }
+            }
+        }
+        Summary summary = builder.build();
+        for (int m = from; m < to; m++) {
+            summaries[component[m]] = summary;
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > dependencies.length) {
+            int capacity = Math.max(size, dependencies.length * 2);
+            dependencies = Arrays.copyOf(dependencies, capacity);
+            implementations = Arrays.copyOf(implementations, capacity);
+        }
+    }
+
+    private static int max(int[] values) {
+        int max = -1;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private static <T> T get(List<T> list, int index) {
+        return index < list.size() ? list.get(index) : null;
+    }
+
+    private static <T> void set(List<T> list, int index, T value) {
+        while (list.size() <= index) {
+            list.add(null);
+        }
+        list.set(index, value);
+    }
+
+    static final class Summary {
+
+        private static final Summary EMPTY = new Summary(new BitSet(), new BitSet());
+
+        final BitSet personalData;
+        final BitSet dataRecipients;
+
+        private Summary(BitSet personalData, BitSet dataRecipients) {
+            this.personalData = personalData;
+            this.dataRecipients = dataRecipients;
+        }
+
+        private static final class Builder {
+
+            private final Union personalData = new Union();
+            private final Union dataRecipients = new Union();
+
+            void add(Summary child) {
+                personalData.addAll(child.personalData);
+                dataRecipients.addAll(child.dataRecipients);
+            }
+
+            void addPersonalData(BitSet pd) {
+                personalData.addAll(pd);
+            }
+
+            void addDataRecipients(BitSet dr) {
+                dataRecipients.addAll(dr);
+            }
+
+            Summary build() {
+                if (personalData.isEmpty() && dataRecipients.isEmpty()) {
+                    return EMPTY;
+                }
+                return new Summary(personalData.get(), dataRecipients.get());
+            }
+        }
+    }
+
+    private static final class Union {
+
+        private static final BitSet NONE = new BitSet();
+
+        private BitSet shared = NONE;
+        private BitSet owned;
+
+        void addAll(BitSet other) {
+            if (other.isEmpty() || other == shared) {
+                return;
+            }
+            if (owned == null) {
+                if (shared.isEmpty()) {
+                    shared = other;
+                    return;
+                }
+                if (containsAll(shared, other)) {
+                    return;
+                }
+                owned = (BitSet) shared.clone();
+            }
+            owned.or(other);
+        }
+
+        boolean isEmpty() {
+            return owned == null && shared.isEmpty();
+        }
+
+        BitSet get() {
+            return owned != null ? owned : shared;
+        }
+
+        private static boolean containsAll(BitSet set, BitSet other) {
+            if (other.length() > set.length()) {
+                return false;
+            }
+            for (int i = other.nextSetBit(0); i >= 0; i = other.nextSetBit(i + 1)) {
+                if (!set.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class ClassHierarchy {
+
+    private final Elements elements;
+    private final Types types;
+    private final Map<TypeElement, TypeElement[]> supertypes = new HashMap<>();
+    private final Map<TypeElement, Map<Name, List<ExecutableElement>>> methods = new HashMap<>();
+
+    ClassHierarchy(Elements elements, Types types) {
+        this.elements = elements;
+        this.types = types;
+    }
+
+    List<ExecutableElement> overriddenMethods(ExecutableElement method) {
+        if (method.getKind() != ElementKind.METHOD || method.getModifiers().contains(Modifier.STATIC)
+                || method.getModifiers().contains(Modifier.PRIVATE)) {
+            return Collections.emptyList();
+        }
+        TypeElement owner = (TypeElement) method.getEnclosingElement();
+        List<ExecutableElement> overridden = null;
+        for (TypeElement supertype : supertypes(owner)) {
+            for (ExecutableElement candidate : methods(supertype).getOrDefault(method.getSimpleName(),
+                    Collections.emptyList())) {
+                if (elements.overrides(method, candidate, owner)) {
+                    if (overridden == null) {
+                        overridden = new ArrayList<>(2);
+                    }
+                    overridden.add(candidate);
+                }
+            }
+        }
+        return overridden != null ? overridden : Collections.emptyList();
+    }
+
+    private TypeElement[] supertypes(TypeElement type) {
+        TypeElement[] closure = supertypes.get(type);
+        if (closure == null) {
+            Set<TypeElement> all = new LinkedHashSet<>();
+            for (TypeMirror direct : types.directSupertypes(type.asType())) {
+                if (direct.getKind() != TypeKind.DECLARED) {
+                    continue;
+                }
+                TypeElement element = (TypeElement) ((DeclaredType) direct).asElement();
+                if (element.getQualifiedName().contentEquals("java.lang.Object")) {
+                    continue;
+                }
+                all.add(element);
+                Collections.addAll(all, supertypes(element));
+            }
+            closure = all.toArray(new TypeElement[0]);
+            supertypes.put(type, closure);
+        }
+        return closure;
+    }
+
+    private Map<Name, List<ExecutableElement>> methods(TypeElement type) {
+        Map<Name, List<ExecutableElement>> members = methods.get(type);
+        if (members == null) {
+            members = new HashMap<>();
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD && !member.getModifiers().contains(Modifier.STATIC)
+                        && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                    members.computeIfAbsent(member.getSimpleName(), k -> new ArrayList<>(1))
+                            .add((ExecutableElement) member);
+                }
+            }
+            methods.put(type, members);
+        }
+        return members;
+    }
+}
@@ -0,0 +1,280 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class ClassModel {
+
+    static final String PERSONAL_DATA = "Lfi/geniem/gdpr/personaldataflow/PersonalData;";
+    static final String PERSONAL_DATA_TRANSFER = "Lfi/geniem/gdpr/personaldataflow/PersonalDataTransfer;";
+    static final String DOCUMENT = "Lorg/springframework/data/mongodb/core/mapping/Document;";
+    static final String REQUEST_MAPPING = "Lorg/springframework/web/bind/annotation/RequestMapping;";
+    private static final String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+
+    final String name;
+    String superName;
+    String[] interfaces = new String[0];
+    String outerClass;
+    String sourceFile;
+    boolean personalData;
+    boolean entity;
+    final boolean source;
+    final Map<String, FieldModel> fields = new HashMap<>();
+    final List<MethodModel> methods = new ArrayList<>();
+    private final Map<String, MethodModel> methodsBySignature = new HashMap<>();
+
+    private ClassModel(String name, boolean source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    static ClassModel read(byte[] bytes, boolean source) {
+        ClassReader reader = new ClassReader(bytes);
+        ClassModel model = new ClassModel(reader.getClassName(), source);
+        int flags = source ? ClassReader.SKIP_FRAMES : ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES;
+        reader.accept(model.new Reader(), flags);
+        return model;
+    }
+
+    static ClassModel missing(String name) {
+        return new ClassModel(name, false);
+    }
+
+    MethodModel method(String name, String descriptor) {
+        return methodsBySignature.get(name + descriptor);
+    }
+
+    String packageName() {
+        int slash = name.lastIndexOf('/');
+        return slash >= 0 ? name.substring(0, slash).replace('/', '.') : "";
+    }
+
+    static final class FieldModel {
+
+        final String owner;
+        final String descriptor;
+        final String signature;
+
+        FieldModel(String owner, String descriptor, String signature) {
+            this.owner = owner;
+            this.descriptor = descriptor;
+            this.signature = signature;
+        }
+    }
+
+    static final class MethodModel {
+
+        final ClassModel owner;
+        final String name;
+        final String descriptor;
+        final String signature;
+        final int access;
+        boolean entryPoint;
+        Transfer transfer;
+        List<MemberRef> invocations = Collections.emptyList();
+        List<MemberRef> fieldAccesses = Collections.emptyList();
+        List<String> createdTypes = Collections.emptyList();
+        List<String> localTypes = Collections.emptyList();
+
+        MethodModel(ClassModel owner, String name, String descriptor, String signature, int access) {
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.signature = signature;
+            this.access = access;
+        }
+
+        boolean is(int flag) {
+            return (access & flag) != 0;
+        }
+
+        String sourceName() {
+            return Signatures.methodName(owner.name, name, descriptor, signature,
+                    owner.source && is(Opcodes.ACC_VARARGS));
+        }
+    }
+
+    static final class MemberRef {
+
+        final int opcode;
+        final String owner;
+        final String name;
+        final String descriptor;
+
+        MemberRef(int opcode, String owner, String name, String descriptor) {
+            this.opcode = opcode;
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+    }
+
+    private final class Reader extends ClassVisitor {
+
+        Reader() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            ClassModel.this.superName = superName;
+            if (interfaces != null) {
+                ClassModel.this.interfaces = interfaces;
+            }
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+            sourceFile = source;
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            if (outerName != null && name.equals(ClassModel.this.name)) {
+                outerClass = outerName;
+            }
+        }
+
+        @Override
+        public void visitOuterClass(String owner, String name, String descriptor) {
+            outerClass = owner;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (PERSONAL_DATA.equals(descriptor)) {
+                personalData = true;
+            } else if (DOCUMENT.equals(descriptor)) {
+                entity = true;
+            }
+            return null;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            fields.put(name, new FieldModel(ClassModel.this.name, descriptor, signature));
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                         String[] exceptions) {
+            MethodModel method = new MethodModel(ClassModel.this, name, descriptor, signature, access);
+            methods.add(method);
+            methodsBySignature.put(name + descriptor, method);
+            return new MethodReader(method);
+        }
+    }
+
+    private final class MethodReader extends MethodVisitor {
+
+        private final MethodModel method;
+        private int pendingNew;
+
+        MethodReader(MethodModel method) {
+            super(Opcodes.ASM9);
+            this.method = method;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (REQUEST_MAPPING.equals(descriptor)) {
+                method.entryPoint = true;
+            } else if (PERSONAL_DATA_TRANSFER.equals(descriptor)) {
+                final String[] values = {"", ""};
+                return new AnnotationVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visit(String name, Object value) {
+                        if ("policyURL".equals(name)) {
+                            values[0] = (String) value;
+                        } else if ("dataRecipientId".equals(name)) {
+                            values[1] = (String) value;
+                        }
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        method.transfer = new Transfer(values[0], values[1]);
+                    }
+                };
+            }
+            return null;
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            if (pendingNew > 0 && opcode == Opcodes.INVOKESPECIAL && "<init>".equals(name)) {
+                pendingNew--;
+                return;
+            }
+            method.invocations = add(method.invocations, new MemberRef(opcode, owner, name, descriptor));
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap, Object... arguments) {
+            if (LAMBDA_METAFACTORY.equals(bootstrap.getOwner()) && arguments.length > 1
+                    && arguments[1] instanceof Handle) {
+                Handle target = (Handle) arguments[1];
+                if (target.getOwner().equals(ClassModel.this.name) && target.getName().startsWith("lambda$")) {
+                    method.invocations = add(method.invocations, new MemberRef(Opcodes.INVOKEDYNAMIC,
+                            target.getOwner(), target.getName(), target.getDesc()));
+                }
+            }
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            method.fieldAccesses = add(method.fieldAccesses, new MemberRef(opcode, owner, name, descriptor));
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (opcode == Opcodes.NEW) {
+                pendingNew++;
+            }
+            if (opcode == Opcodes.NEW || opcode == Opcodes.ANEWARRAY) {
+                String element = Signatures.arrayElement(type);
+                if (element != null) {
+                    method.createdTypes = add(method.createdTypes, element);
+                }
+            }
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            String element = Signatures.arrayElement(descriptor);
+            if (element != null) {
+                method.createdTypes = add(method.createdTypes, element);
+            }
+        }
+
+        @Override
+        public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end,
+                                       int index) {
+            if (!"this".equals(name)) {
+                method.localTypes = add(method.localTypes, signature != null ? signature : descriptor);
+            }
+        }
+    }
+
+    private static <T> List<T> add(List<T> list, T value) {
+        if (list.isEmpty()) {
+            list = new ArrayList<>();
+        }
+        list.add(value);
+        return list;
+    }
+}
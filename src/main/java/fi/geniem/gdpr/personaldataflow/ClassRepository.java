@@ -0,0 +1,178 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import fi.geniem.gdpr.personaldataflow.ClassModel.FieldModel;
+import fi.geniem.gdpr.personaldataflow.ClassModel.MethodModel;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+final class ClassRepository implements Closeable {
+
+    private final Map<String, ClassModel> classes = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> personalDataEntities = new ConcurrentHashMap<>();
+    private final Map<String, String[]> supertypes = new ConcurrentHashMap<>();
+    private final URLClassLoader libraries;
+    private Consumer<ClassModel> loaded = model -> {
+    };
+
+    ClassRepository(URL[] classpath) {
+        libraries = new URLClassLoader(classpath, ClassLoader.getSystemClassLoader());
+    }
+
+    void onLoad(Consumer<ClassModel> loaded) {
+        this.loaded = loaded;
+    }
+
+    void add(ClassModel model) {
+        classes.put(model.name, model);
+    }
+
+    ClassModel get(String name) {
+        ClassModel model = classes.get(name);
+        if (model == null) {
+            model = load(name);
+            loaded.accept(model);
+            ClassModel previous = classes.putIfAbsent(name, model);
+            if (previous != null) {
+                model = previous;
+            }
+        }
+        return model;
+    }
+
+    MethodModel resolveMethod(String owner, String name, String descriptor) {
+        for (String type = owner; type != null; type = get(type).superName) {
+            MethodModel method = get(type).method(name, descriptor);
+            if (method != null) {
+                return method;
+            }
+        }
+        for (String type = owner; type != null; type = get(type).superName) {
+            for (String iface : get(type).interfaces) {
+                MethodModel method = resolveInterfaceMethod(iface, name, descriptor);
+                if (method != null) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    FieldModel resolveField(String owner, String name) {
+        for (String type = owner; type != null; type = get(type).superName) {
+            ClassModel model = get(type);
+            FieldModel field = model.fields.get(name);
+            if (field != null) {
+                return field;
+            }
+            for (String iface : model.interfaces) {
+                field = resolveField(iface, name);
+                if (field != null) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    List<MethodModel> overriddenMethods(String owner, String name, String descriptor) {
+        List<MethodModel> overridden = Collections.emptyList();
+        for (String supertype : supertypes(owner)) {
+            MethodModel method = get(supertype).method(name, descriptor);
+            if (method != null && !method.is(Opcodes.ACC_STATIC) && !method.is(Opcodes.ACC_PRIVATE)) {
+                if (overridden.isEmpty()) {
+                    overridden = new ArrayList<>(2);
+                }
+                overridden.add(method);
+            }
+        }
+        return overridden;
+    }
+
+    boolean isPersonalDataEntity(String name) {
+        Boolean result = personalDataEntities.get(name);
+        if (result == null) {
+            boolean personalData = false;
+            boolean entity = false;
+            for (String type = name; type != null; type = get(type).superName) {
+                ClassModel model = get(type);
+                personalData |= model.personalData;
+                entity |= model.entity;
+            }
+            result = personalData && entity;
+            personalDataEntities.put(name, result);
+        }
+        return result;
+    }
+
+    private String[] supertypes(String name) {
+        String[] closure = supertypes.get(name);
+        if (closure == null) {
+            Set<String> all = new LinkedHashSet<>();
+            ClassModel model = get(name);
+            if (model.superName != null && !"java/lang/Object".equals(model.superName)) {
+                all.add(model.superName);
+                Collections.addAll(all, supertypes(model.superName));
+            }
+            for (String iface : model.interfaces) {
+                all.add(iface);
+                Collections.addAll(all, supertypes(iface));
+            }
+            closure = all.toArray(new String[0]);
+            supertypes.put(name, closure);
+        }
+        return closure;
+    }
+
+    private MethodModel resolveInterfaceMethod(String iface, String name, String descriptor) {
+        ClassModel model = get(iface);
+        MethodModel method = model.method(name, descriptor);
+        if (method != null) {
+            return method;
+        }
+        for (String parent : model.interfaces) {
+            method = resolveInterfaceMethod(parent, name, descriptor);
+            if (method != null) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        libraries.close();
+    }
+
+    private ClassModel load(String name) {
+        try (InputStream in = libraries.getResourceAsStream(name + ".class")) {
+            if (in == null) {
+                return ClassModel.missing(name);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                bytes.write(buffer, 0, n);
+            }
+            return ClassModel.read(bytes.toByteArray(), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            return ClassModel.missing(name);
+        }
+    }
+}
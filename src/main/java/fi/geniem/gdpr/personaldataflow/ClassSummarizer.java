@@ -0,0 +1,180 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import fi.geniem.gdpr.personaldataflow.ClassModel.FieldModel;
+import fi.geniem.gdpr.personaldataflow.ClassModel.MemberRef;
+import fi.geniem.gdpr.personaldataflow.ClassModel.MethodModel;
+import org.objectweb.asm.Opcodes;
+
+import java.util.*;
+
+final class ClassSummarizer {
+
+    private final ClassRepository repository;
+
+    ClassSummarizer(ClassRepository repository) {
+        this.repository = repository;
+    }
+
+    List<MethodResult> analyze(ClassModel model) {
+        if (model.sourceFile != null && model.sourceFile.endsWith("Test.java")) {
+            return Collections.emptyList();
+        }
+        Map<MethodModel, List<String>> bridged = new HashMap<>();
+        for (MethodModel method : model.methods) {
+            if (method.is(Opcodes.ACC_BRIDGE)) {
+                MethodModel target = bridgeTarget(model, method);
+                if (target != null) {
+                    List<String> names = bridged.computeIfAbsent(target, k -> new ArrayList<>());
+                    for (MethodModel overridden : repository.overriddenMethods(model.name, method.name,
+                            method.descriptor)) {
+                        names.add(overridden.sourceName());
+                    }
+                }
+            }
+        }
+        String controller = controllerName(model);
+        List<MethodResult> results = new ArrayList<>();
+        for (MethodModel method : model.methods) {
+            boolean lambda = method.name.startsWith("lambda$");
+            if (method.is(Opcodes.ACC_BRIDGE) || method.is(Opcodes.ACC_SYNTHETIC) && !lambda
+                    || "<clinit>".equals(method.name)) {
+                continue;
+            }
+            MethodResult result = new MethodResult(method.sourceName(), method.entryPoint ? controller : null);
+            results.add(result);
+            if (method.is(Opcodes.ACC_ABSTRACT)) {
+                continue;
+            }
+            if (!lambda && !"<init>".equals(method.name) && !method.is(Opcodes.ACC_STATIC)
+                    && !method.is(Opcodes.ACC_PRIVATE)) {
+                for (MethodModel overridden : repository.overriddenMethods(model.name, method.name,
+                        method.descriptor)) {
+                    result.interfaceMethods.add(overridden.sourceName());
+                }
+                List<String> names = bridged.get(method);
+                if (names != null) {
+                    for (String name : names) {
+                        if (!result.interfaceMethods.contains(name)) {
+                            result.interfaceMethods.add(name);
+                        }
+                    }
+                }
+            }
+            scan(method, result);
+        }
+        return results;
+    }
+
+    private static MethodModel bridgeTarget(ClassModel model, MethodModel bridge) {
+        for (MemberRef invocation : bridge.invocations) {
+            if (invocation.owner.equals(model.name) && invocation.name.equals(bridge.name)) {
+                return model.method(invocation.name, invocation.descriptor);
+            }
+        }
+        return null;
+    }
+
+    private void scan(MethodModel method, MethodResult result) {
+        result.dependencies = new ArrayList<>();
+        for (MemberRef invocation : method.invocations) {
+            if (invocation.owner.startsWith("[")) {
+                continue;
+            }
+            MethodModel target = repository.resolveMethod(invocation.owner, invocation.name, invocation.descriptor);
+            result.dependencies.add(target != null ? target.sourceName()
+                    : Signatures.methodName(invocation.owner, invocation.name, invocation.descriptor, null, false));
+            if (target != null && target.transfer != null) {
+                result.transfers.add(target.transfer);
+            }
+            if (invocation.opcode != Opcodes.INVOKEDYNAMIC && !"<init>".equals(invocation.name)) {
+                personalData(invocation.owner, result);
+            }
+        }
+        for (MemberRef access : method.fieldAccesses) {
+            personalData(access.owner, result);
+            FieldModel field = repository.resolveField(access.owner, access.name);
+            if (field != null) {
+                mentions(field.signature != null ? field.signature : field.descriptor, false, result);
+            }
+        }
+        for (String type : method.createdTypes) {
+            personalData(type, result);
+        }
+        if (method.signature != null) {
+            List<String> arguments = new ArrayList<>();
+            Signatures.methodClassArguments(method.signature, arguments);
+            for (String type : arguments) {
+                personalData(type, result);
+            }
+        }
+        for (String type : method.localTypes) {
+            mentions(type, true, result);
+        }
+    }
+
+    private void mentions(String type, boolean nested, MethodResult result) {
+        if (type.startsWith("[")) {
+            String element = Signatures.arrayElement(type);
+            if (element != null && element.indexOf('<') < 0) {
+                personalData(element, result);
+            }
+        } else {
+            for (String argument : Signatures.classArguments(type, nested)) {
+                personalData(argument, result);
+            }
+        }
+    }
+
+    private void personalData(String type, MethodResult result) {
+        if (repository.isPersonalDataEntity(type)) {
+            result.personalData.add(Signatures.sourceName(type));
+        }
+    }
+
+    private static String controllerName(ClassModel model) {
+        String file = model.sourceFile;
+        if (file == null) {
+            String name = model.name.substring(model.name.lastIndexOf('/') + 1);
+            int nested = name.indexOf('$');
+            file = nested >= 0 ? name.substring(0, nested) : name;
+        }
+        return model.packageName() + "." + file.replaceFirst(".java", "");
+    }
+
+    static final class MethodResult {
+
+        final String name;
+        final String controller;
+        final List<String> interfaceMethods = new ArrayList<>();
+        List<String> dependencies;
+        final Set<String> personalData = new HashSet<>();
+        final Set<Transfer> transfers = new HashSet<>();
+
+        MethodResult(String name, String controller) {
+            this.name = name;
+            this.controller = controller;
+        }
+
+        MethodSummary summary(MethodTable methods, Numbering<String> personalDataTypes,
+                              Numbering<Transfer> recipients) {
+            int[] interfaceIds = new int[interfaceMethods.size()];
+            for (int i = 0; i < interfaceIds.length; i++) {
+                interfaceIds[i] = methods.intern(interfaceMethods.get(i));
+            }
+            int[] deps = new int[dependencies.size()];
+            for (int i = 0; i < deps.length; i++) {
+                deps[i] = methods.intern(dependencies.get(i));
+            }
+            BitSet pd = new BitSet();
+            for (String type : personalData) {
+                pd.set(personalDataTypes.number(type));
+            }
+            BitSet dr = new BitSet();
+            for (Transfer transfer : transfers) {
+                dr.set(recipients.number(transfer));
+            }
+            return new MethodSummary(methods.intern(name), interfaceIds, IntArrays.sortedUnique(deps, deps.length),
+                    pd, dr);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.source.tree.Tree;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+final class CompilationReport {
+
+    private static final Tree.Kind[] KINDS = Tree.Kind.values();
+
+    private final int top;
+    private final long started = System.nanoTime();
+    private final Map<String, UnitTime> units = new HashMap<>();
+    private final long[] nodes = new long[KINDS.length];
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private long events;
+    private long eventNanos;
+    private long maxEventNanos;
+
+    CompilationReport(int top) {
+        this.top = top;
+    }
+
+    void analyzed(String source, long nanos) {
+        events++;
+        eventNanos += nanos;
+        maxEventNanos = Math.max(maxEventNanos, nanos);
+        UnitTime unit = units.get(source);
+        if (unit == null) {
+            unit = new UnitTime(source);
+            units.put(source, unit);
+        }
+        unit.events++;
+        unit.nanos += nanos;
+    }
+
+    void node(Tree.Kind kind) {
+        nodes[kind.ordinal()]++;
+    }
+
+    void phase(String name, long nanos) {
+        phases.merge(name, nanos, Long::sum);
+    }
+
+    void count(String name, long delta) {
+        counters.merge(name, delta, Long::sum);
+    }
+
+    void set(String name, long value) {
+        counters.put(name, value);
+    }
+
+    void write(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        List<UnitTime> slowest = new ArrayList<>(units.values());
+        slowest.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(out, "  ")) {
+            json.beginObject();
+            json.name("totalMicros").value(micros(System.nanoTime() - started));
+            json.name("analyzeEvents").beginObject();
+            json.name("count").value(events);
+            json.name("totalMicros").value(micros(eventNanos));
+            json.name("maxMicros").value(micros(maxEventNanos));
+            json.endObject();
+            json.name("units").value(units.size());
+            json.name("phases").beginObject();
+            for (Map.Entry<String, Long> phase : phases.entrySet()) {
+                json.name(phase.getKey() + "Micros").value(micros(phase.getValue()));
+            }
+            json.endObject();
+            json.name("nodes").beginObject();
+            for (Tree.Kind kind : KINDS) {
+                if (nodes[kind.ordinal()] > 0) {
+                    json.name(kind.name()).value(nodes[kind.ordinal()]);
+                }
+            }
+            json.endObject();
+            json.name("counters").beginObject();
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                json.name(counter.getKey()).value(counter.getValue());
+            }
+            json.endObject();
+            json.name("slowestUnits").beginArray();
+            for (UnitTime unit : slowest.subList(0, Math.min(top, slowest.size()))) {
+                json.beginObject();
+                json.name("source").value(unit.source);
+                json.name("events").value(unit.events);
+                json.name("micros").value(micros(unit.nanos));
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    private static final class UnitTime {
+
+        final String source;
+        long events;
+        long nanos;
+
+        UnitTime(String source) {
+            this.source = source;
+        }
+    }
+}
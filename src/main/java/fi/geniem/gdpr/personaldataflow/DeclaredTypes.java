@@ -0,0 +1,66 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.util.Names;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+final class DeclaredTypes {
+
+    private static final List<TypeMirror> NONE = Collections.emptyList();
+
+    private final Types types;
+    private final TypeMentions typeMentions;
+    private final Map<Symbol, List<TypeMirror>> mentions = new HashMap<>();
+
+    private long lookups;
+
+    DeclaredTypes(Types types, TypeMentions typeMentions) {
+        this.types = types;
+        this.typeMentions = typeMentions;
+    }
+
+    void clear() {
+        mentions.clear();
+    }
+
+    List<TypeMirror> personalDataMentions(Symbol sym, Predicate<Element> personalData) {
+        if (sym == null || sym instanceof Symbol.MethodSymbol || sym instanceof Symbol.PackageSymbol
+                || sym instanceof Symbol.TypeVariableSymbol || isThisOrSuper(sym)) {
+            return NONE;
+        }
+        List<TypeMirror> candidates = mentions.get(sym);
+        if (candidates == null) {
+            lookups++;
+            candidates = typeMentions.arguments(sym.asType());
+            mentions.put(sym, candidates);
+        }
+        List<TypeMirror> result = NONE;
+        for (TypeMirror type : candidates) {
+            if (personalData.test(types.asElement(type))) {
+                if (result == NONE) {
+                    result = new ArrayList<>(candidates.size());
+                }
+                result.add(type);
+            }
+        }
+        return result;
+    }
+
+    long getLookups() {
+        return lookups;
+    }
+
+    private static boolean isThisOrSuper(Symbol sym) {
+        Names names = sym.name.table.names;
+        return sym.name == names._this || sym.name == names._super;
+    }
+}
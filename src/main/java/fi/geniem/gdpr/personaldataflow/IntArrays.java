@@ -0,0 +1,68 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.util.Arrays;
+
+final class IntArrays {
+
+    static final int[] EMPTY = new int[0];
+
+    private IntArrays() {
+    }
+
+    static int[] sortedUnique(int[] values, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        int[] sorted = Arrays.copyOf(values, length);
+        Arrays.sort(sorted);
+        int unique = 1;
+        for (int i = 1; i < length; i++) {
+            if (sorted[i] != sorted[unique - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return unique == length ? sorted : Arrays.copyOf(sorted, unique);
+    }
+
+    static int[] union(int[] a, int[] b) {
+        if (b.length == 0 || a == b) {
+            return a;
+        }
+        if (a.length == 0) {
+            return b;
+        }
+        int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                merged[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                merged[k++] = b[j++];
+            } else {
+                merged[k++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            merged[k++] = a[i++];
+        }
+        while (j < b.length) {
+            merged[k++] = b[j++];
+        }
+        if (k == a.length) {
+            return a;
+        }
+        if (k == b.length) {
+            return b;
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    static int[] append(int[] values, int value) {
+        int[] grown = Arrays.copyOf(values, values.length + 1);
+        grown[values.length] = value;
+        return grown;
+    }
+}
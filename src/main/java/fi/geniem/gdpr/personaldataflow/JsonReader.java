@@ -0,0 +1,243 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+final class JsonReader implements Closeable {
+
+    enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END }
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder text = new StringBuilder(64);
+    private int position;
+    private int limit;
+    private boolean[] objects = new boolean[8];
+    private boolean[] nonEmpty = new boolean[8];
+    private int depth;
+    private boolean afterName;
+    private Token peeked;
+
+    JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = read();
+        }
+        return peeked;
+    }
+
+    boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END;
+    }
+
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+    }
+
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+    }
+
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        return text.toString();
+    }
+
+    String nextString() throws IOException {
+        if (peek() == Token.NULL) {
+            peeked = null;
+            return null;
+        }
+        expect(Token.STRING);
+        return text.toString();
+    }
+
+    boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return text.charAt(0) == 't';
+    }
+
+    long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        return Long.parseLong(text.toString());
+    }
+
+    void skipValue() throws IOException {
+        int nested = 0;
+        do {
+            Token token = peek();
+            peeked = null;
+            if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+                nested++;
+            } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+                nested--;
+            } else if (token == Token.END) {
+                throw new IOException("Unexpected end of input");
+            }
+        } while (nested > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw new IOException("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private Token read() throws IOException {
+        int c = skipWhitespace();
+        if (afterName) {
+            afterName = false;
+        } else if (depth > 0 && c != '}' && c != ']') {
+            if (nonEmpty[depth]) {
+                if (c != ',') {
+                    throw syntaxError(c);
+                }
+                c = skipWhitespace();
+            }
+            nonEmpty[depth] = true;
+            if (objects[depth]) {
+                if (c != '"') {
+                    throw syntaxError(c);
+                }
+                string();
+                if (skipWhitespace() != ':') {
+                    throw new IOException("Expected ':' after " + text);
+                }
+                afterName = true;
+                return Token.NAME;
+            }
+        }
+        switch (c) {
+            case -1:
+                if (depth > 0) {
+                    throw new IOException("Unexpected end of input");
+                }
+                return Token.END;
+            case '{':
+                return open(true);
+            case '[':
+                return open(false);
+            case '}':
+            case ']':
+                if (depth == 0 || objects[depth] != (c == '}')) {
+                    throw syntaxError(c);
+                }
+                depth--;
+                return c == '}' ? Token.END_OBJECT : Token.END_ARRAY;
+            case '"':
+                string();
+                return Token.STRING;
+            default:
+                literal(c);
+                switch (text.toString()) {
+                    case "true":
+                    case "false":
+                        return Token.BOOLEAN;
+                    case "null":
+                        return Token.NULL;
+                    default:
+                        return Token.NUMBER;
+                }
+        }
+    }
+
+    private Token open(boolean object) {
+        if (++depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+            nonEmpty = Arrays.copyOf(nonEmpty, depth * 2);
+        }
+        objects[depth] = object;
+        nonEmpty[depth] = false;
+        return object ? Token.BEGIN_OBJECT : Token.BEGIN_ARRAY;
+    }
+
+    private void string() throws IOException {
+        text.setLength(0);
+        for (int c = next(); c != '"'; c = next()) {
+            if (c == -1) {
+                throw new IOException("Unterminated string");
+            }
+            if (c == '\\') {
+                c = next();
+                switch (c) {
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            code = code << 4 | Character.digit(next(), 16);
+                        }
+                        c = code;
+                        break;
+                    case -1:
+                        throw new IOException("Unterminated string");
+                    default:
+                        break;
+                }
+            }
+            text.append((char) c);
+        }
+    }
+
+    private void literal(int c) throws IOException {
+        text.setLength(0);
+        while (c == '-' || c == '+' || c == '.' || Character.isLetterOrDigit(c)) {
+            text.append((char) c);
+            c = next();
+        }
+        if (c != -1) {
+            position--;
+        }
+        if (text.length() == 0) {
+            throw syntaxError(c);
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c = next();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = next();
+        }
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private static IOException syntaxError(int c) {
+        return new IOException(c == -1 ? "Unexpected end of input" : "Unexpected character '" + (char) c + "'");
+    }
+}
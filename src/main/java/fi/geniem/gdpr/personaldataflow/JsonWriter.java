@@ -0,0 +1,182 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+final class JsonWriter implements Closeable, Flushable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final String indent;
+
+    private boolean[] nonEmpty = new boolean[8];
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(Writer out, String indent) {
+        this.out = out;
+        this.indent = indent;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(indent.isEmpty() ? ":" : ": ");
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        separate();
+        string(value);
+        return this;
+    }
+
+    JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    JsonWriter nullValue() throws IOException {
+        separate();
+        out.write("null");
+        return this;
+    }
+
+    JsonWriter stringArray(Iterable<String> values) throws IOException {
+        beginArray();
+        for (String value : values) {
+            value(value);
+        }
+        return endArray();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private JsonWriter open(char c) throws IOException {
+        separate();
+        out.write(c);
+        if (++depth == nonEmpty.length) {
+            nonEmpty = Arrays.copyOf(nonEmpty, depth * 2);
+        }
+        nonEmpty[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        boolean hadValues = nonEmpty[depth--];
+        if (hadValues) {
+            newline();
+        }
+        out.write(c);
+        if (depth == 0 && !indent.isEmpty()) {
+            out.write('\n');
+        }
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) {
+            return;
+        }
+        if (nonEmpty[depth]) {
+            out.write(',');
+        }
+        nonEmpty[depth] = true;
+        newline();
+    }
+
+    private void newline() throws IOException {
+        if (indent.isEmpty()) {
+            return;
+        }
+        out.write('\n');
+        for (int i = 0; i < depth; i++) {
+            out.write(indent);
+        }
+    }
+
+    private void string(String s) throws IOException {
+        out.write('"');
+        int last = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            String replacement;
+            if (c == '"') {
+                replacement = "\\\"";
+            } else if (c == '\\') {
+                replacement = "\\\\";
+            } else if (c == '\n') {
+                replacement = "\\n";
+            } else if (c == '\r') {
+                replacement = "\\r";
+            } else if (c == '\t') {
+                replacement = "\\t";
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                replacement = null;
+            } else {
+                continue;
+            }
+            if (last < i) {
+                out.write(s, last, i - last);
+            }
+            if (replacement != null) {
+                out.write(replacement);
+            } else {
+                out.write("\\u");
+                out.write(HEX[(c >> 12) & 0xf]);
+                out.write(HEX[(c >> 8) & 0xf]);
+                out.write(HEX[(c >> 4) & 0xf]);
+                out.write(HEX[c & 0xf]);
+            }
+            last = i + 1;
+        }
+        if (last < length) {
+            out.write(s, last, length - last);
+        }
+        out.write('"');
+    }
+}
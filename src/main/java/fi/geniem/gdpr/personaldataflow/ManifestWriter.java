@@ -0,0 +1,94 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+final class ManifestWriter implements Closeable {
+
+    private final Path file;
+    private final Path temp;
+    private final OutputStream out;
+    private long controllers;
+    private long bytes;
+    private boolean changed;
+
+    ManifestWriter(Path file) throws IOException {
+        this.file = file;
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        temp = file.resolveSibling(file.getFileName() + ".tmp");
+        out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16);
+    }
+
+    ManifestWriter(OutputStream out) {
+        this.file = null;
+        this.temp = null;
+        this.out = new BufferedOutputStream(out, 1 << 16);
+    }
+
+    void add(OutputBuffer purpose) throws IOException {
+        purpose.writeTo(out);
+        out.write('\n');
+        controllers++;
+        bytes += purpose.size() + 1;
+    }
+
+    long getControllers() {
+        return controllers;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    boolean isChanged() {
+        return changed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+        if (file == null) {
+            changed = true;
+        } else if (sameContent(temp, file)) {
+            Files.delete(temp);
+        } else {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            changed = true;
+        }
+    }
+
+    private static boolean sameContent(Path a, Path b) throws IOException {
+        if (!Files.isRegularFile(b) || Files.size(a) != Files.size(b)) {
+            return false;
+        }
+        try (InputStream in1 = Files.newInputStream(a); InputStream in2 = Files.newInputStream(b)) {
+            byte[] buffer1 = new byte[8192];
+            byte[] buffer2 = new byte[8192];
+            for (int n; (n = in1.read(buffer1)) > 0; ) {
+                int read = 0;
+                while (read < n) {
+                    int m = in2.read(buffer2, read, n - read);
+                    if (m < 0) {
+                        return false;
+                    }
+                    read += m;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (buffer1[i] != buffer2[i]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
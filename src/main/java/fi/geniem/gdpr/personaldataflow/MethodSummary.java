@@ -0,0 +1,21 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.util.BitSet;
+
+final class MethodSummary {
+
+    public final int method;
+    public final int[] interfaceMethods;
+    public final int[] dependencies;
+    public final BitSet personalData;
+    public final BitSet dataRecipients;
+
+    public MethodSummary(int method, int[] interfaceMethods, int[] dependencies,
+                         BitSet personalData, BitSet dataRecipients) {
+        this.method = method;
+        this.interfaceMethods = interfaceMethods;
+        this.dependencies = dependencies;
+        this.personalData = personalData;
+        this.dataRecipients = dataRecipients;
+    }
+}
@@ -0,0 +1,276 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+final class MethodSummaryIndex {
+
+    private static final int MAGIC = 0x50444958;
+    private static final int VERSION = 4;
+
+    private final Path file;
+    private final MethodTable methods;
+    private final Numbering<String> personalDataTypes;
+    private final Numbering<Transfer> recipients;
+    private final Map<String, UnitSummary> units = new LinkedHashMap<>();
+
+    private MethodSummaryIndex(Path file, MethodTable methods, Numbering<String> personalDataTypes,
+                               Numbering<Transfer> recipients) {
+        this.file = file;
+        this.methods = methods;
+        this.personalDataTypes = personalDataTypes;
+        this.recipients = recipients;
+    }
+
+    static MethodSummaryIndex load(Path file, MethodTable methods, Numbering<String> personalDataTypes,
+                                   Numbering<Transfer> recipients) throws IOException {
+        MethodSummaryIndex index = new MethodSummaryIndex(file, methods, personalDataTypes, recipients);
+        if (!Files.isRegularFile(file)) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return index;
+            }
+            int[] ids = new int[in.readInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = methods.intern(in.readUTF());
+            }
+            int[] types = new int[in.readInt()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = personalDataTypes.number(in.readUTF());
+            }
+            int[] transfers = new int[in.readInt()];
+            for (int i = 0; i < transfers.length; i++) {
+                String policyURL = in.readUTF();
+                transfers[i] = recipients.number(new Transfer(policyURL, in.readUTF()));
+            }
+            int unitCount = in.readInt();
+            for (int i = 0; i < unitCount; i++) {
+                UnitSummary unit = readUnit(in, ids, types, transfers);
+                index.units.put(unit.source, unit);
+            }
+        } catch (EOFException e) {
+            index.units.clear();
+        }
+        return index;
+    }
+
+    UnitSummary get(String source) {
+        return units.get(source);
+    }
+
+    void put(UnitSummary unit) {
+        units.put(unit.source, unit);
+    }
+
+    UnitSummary remove(String source) {
+        return units.remove(source);
+    }
+
+    Collection<UnitSummary> units() {
+        return new ArrayList<>(units.values());
+    }
+
+    void save() throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        Map<Integer, Integer> ids = new HashMap<>();
+        Map<Integer, Integer> types = new HashMap<>();
+        Map<Integer, Integer> transfers = new HashMap<>();
+        for (UnitSummary unit : units.values()) {
+            for (int entryPoint : unit.entryPoints) {
+                localId(ids, entryPoint);
+            }
+            for (MethodSummary method : unit.methods) {
+                localId(ids, method.method);
+                localIds(ids, method.interfaceMethods);
+                localIds(ids, method.dependencies);
+                localIds(types, method.personalData);
+                localIds(transfers, method.dataRecipients);
+            }
+        }
+        String[] names = new String[ids.size()];
+        for (Map.Entry<Integer, Integer> id : ids.entrySet()) {
+            names[id.getValue()] = methods.name(id.getKey());
+        }
+        String[] typeNames = new String[types.size()];
+        for (Map.Entry<Integer, Integer> type : types.entrySet()) {
+            typeNames[type.getValue()] = personalDataTypes.get(type.getKey());
+        }
+        Transfer[] transferValues = new Transfer[transfers.size()];
+        for (Map.Entry<Integer, Integer> transfer : transfers.entrySet()) {
+            transferValues[transfer.getValue()] = recipients.get(transfer.getKey());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            out.writeInt(typeNames.length);
+            for (String type : typeNames) {
+                out.writeUTF(type);
+            }
+            out.writeInt(transferValues.length);
+            for (Transfer t : transferValues) {
+                out.writeUTF(t.policyURL);
+                out.writeUTF(t.recipientId);
+            }
+            out.writeInt(units.size());
+            for (UnitSummary unit : units.values()) {
+                writeUnit(out, unit, ids, types, transfers);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static byte[] hash(CharSequence content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return digest.digest(content.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static UnitSummary readUnit(DataInputStream in, int[] ids, int[] types, int[] transfers)
+            throws IOException {
+        String source = in.readUTF();
+        byte[] hash = new byte[in.readUnsignedShort()];
+        in.readFully(hash);
+        String controller = in.readUTF();
+        byte[] referenceHash = new byte[in.readUnsignedShort()];
+        in.readFully(referenceHash);
+        Set<String> referencedTypes = new TreeSet<>();
+        int typeCount = in.readInt();
+        for (int i = 0; i < typeCount; i++) {
+            referencedTypes.add(in.readUTF());
+        }
+        int[] entryPoints = readIds(in, ids);
+        Set<Integer> entryPointSet = new LinkedHashSet<>();
+        for (int entryPoint : entryPoints) {
+            entryPointSet.add(entryPoint);
+        }
+        int methodCount = in.readInt();
+        List<MethodSummary> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            int method = ids[in.readInt()];
+            int[] interfaceMethods = readIds(in, ids);
+            int[] deps = readIds(in, ids);
+            BitSet pd = readBits(in, types);
+            BitSet dr = readBits(in, transfers);
+            methods.add(new MethodSummary(method, interfaceMethods, deps, pd, dr));
+        }
+        UnitSummary unit = new UnitSummary(source, hash, controller, entryPointSet, methods);
+        unit.referencedTypes.addAll(referencedTypes);
+        unit.referenceHash = referenceHash;
+        return unit;
+    }
+
+    private static void writeUnit(DataOutputStream out, UnitSummary unit, Map<Integer, Integer> ids,
+                                  Map<Integer, Integer> types, Map<Integer, Integer> transfers) throws IOException {
+        out.writeUTF(unit.source);
+        out.writeShort(unit.hash.length);
+        out.write(unit.hash);
+        out.writeUTF(unit.controller);
+        out.writeShort(unit.referenceHash.length);
+        out.write(unit.referenceHash);
+        out.writeInt(unit.referencedTypes.size());
+        for (String type : unit.referencedTypes) {
+            out.writeUTF(type);
+        }
+        out.writeInt(unit.entryPoints.size());
+        for (int entryPoint : unit.entryPoints) {
+            out.writeInt(ids.get(entryPoint));
+        }
+        out.writeInt(unit.methods.size());
+        for (MethodSummary method : unit.methods) {
+            out.writeInt(ids.get(method.method));
+            writeIds(out, method.interfaceMethods, ids);
+            writeIds(out, method.dependencies, ids);
+            writeBits(out, method.personalData, types);
+            writeBits(out, method.dataRecipients, transfers);
+        }
+    }
+
+    private static void localId(Map<Integer, Integer> ids, int id) {
+        if (!ids.containsKey(id)) {
+            ids.put(id, ids.size());
+        }
+    }
+
+    private static void localIds(Map<Integer, Integer> ids, int[] values) {
+        for (int id : values) {
+            localId(ids, id);
+        }
+    }
+
+    private static void localIds(Map<Integer, Integer> ids, BitSet values) {
+        for (int id = values.nextSetBit(0); id >= 0; id = values.nextSetBit(id + 1)) {
+            localId(ids, id);
+        }
+    }
+
+    private static int[] readIds(DataInputStream in, int[] ids) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ids[in.readInt()];
+        }
+        return values;
+    }
+
+    private static void writeIds(DataOutputStream out, int[] values, Map<Integer, Integer> ids) throws IOException {
+        out.writeInt(values.length);
+        for (int id : values) {
+            out.writeInt(ids.get(id));
+        }
+    }
+
+    private static BitSet readBits(DataInputStream in, int[] numbers) throws IOException {
+        int count = in.readInt();
+        BitSet bits = new BitSet();
+        for (int i = 0; i < count; i++) {
+            bits.set(numbers[in.readInt()]);
+        }
+        return bits;
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits, Map<Integer, Integer> numbers)
+            throws IOException {
+        out.writeInt(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            out.writeInt(numbers.get(i));
+        }
+    }
+
+    static final class UnitSummary {
+
+        public final String source;
+        public final byte[] hash;
+        public final String controller;
+        public final Set<Integer> entryPoints;
+        public final List<MethodSummary> methods;
+        public final Set<String> referencedTypes = new TreeSet<>();
+        public byte[] referenceHash = new byte[0];
+
+        public UnitSummary(String source, byte[] hash, String controller, Set<Integer> entryPoints,
+                           List<MethodSummary> methods) {
+            this.source = source;
+            this.hash = hash;
+            this.controller = controller;
+            this.entryPoints = entryPoints;
+            this.methods = methods;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+final class MethodTable {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[1024];
+    private int size;
+
+    int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+
+    int find(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return size;
+    }
+}
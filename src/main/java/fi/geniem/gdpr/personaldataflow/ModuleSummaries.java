@@ -0,0 +1,331 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+final class ModuleSummaries {
+
+    static final String RESOURCE = "META-INF/personaldataflow/summaries.bin";
+
+    private static final int MAGIC = 0x5044534D;
+    private static final int VERSION = 1;
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    private final URL[] classpath;
+    private final MethodTable methods;
+    private final Numbering<String> personalDataTypes;
+    private final Numbering<Transfer> recipients;
+    private List<SummaryFile> files;
+    private long bytesMapped;
+    private long bytesRead;
+    private long lookups;
+    private long hits;
+
+    ModuleSummaries(URL[] classpath, MethodTable methods, Numbering<String> personalDataTypes,
+                    Numbering<Transfer> recipients) {
+        this.classpath = classpath;
+        this.methods = methods;
+        this.personalDataTypes = personalDataTypes;
+        this.recipients = recipients;
+    }
+
+    MethodSummary find(int method) throws IOException {
+        lookups++;
+        String name = methods.name(method);
+        int[] dependencies = null;
+        BitSet personalData = new BitSet();
+        BitSet dataRecipients = new BitSet();
+        for (SummaryFile file : files()) {
+            int index = file.find(name);
+            if (index < 0 || !file.isDefined(index)) {
+                continue;
+            }
+            int[] edges = file.read(index, personalData, dataRecipients);
+            dependencies = dependencies == null ? edges : IntArrays.union(dependencies, edges);
+        }
+        if (dependencies == null) {
+            return null;
+        }
+        hits++;
+        return new MethodSummary(method, IntArrays.EMPTY, dependencies, personalData, dataRecipients);
+    }
+
+    int getFiles() {
+        return files != null ? files.size() : 0;
+    }
+
+    long getBytesMapped() {
+        return bytesMapped;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getLookups() {
+        return lookups;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    private List<SummaryFile> files() throws IOException {
+        if (files == null) {
+            files = new ArrayList<>();
+            try (URLClassLoader loader = new URLClassLoader(classpath, null)) {
+                for (URL url : Collections.list(loader.getResources(RESOURCE))) {
+                    ByteBuffer buffer = load(url);
+                    if (buffer.remaining() >= 8 && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+                        files.add(new SummaryFile(buffer));
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    private ByteBuffer load(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size >= MAP_THRESHOLD) {
+                    bytesMapped += size;
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                bytesRead += buffer.remaining();
+                return buffer;
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(connection.getContentLength(), 8192));
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                bytes.write(buffer, 0, n);
+            }
+            bytesRead += bytes.size();
+            return ByteBuffer.wrap(bytes.toByteArray());
+        }
+    }
+
+    static void write(OutputStream out, CallGraph graph, BitSet exported, Numbering<String> personalDataTypes,
+                      Numbering<Transfer> recipients) throws IOException {
+        MethodTable methods = graph.getMethods();
+        Set<String> referenced = new TreeSet<>();
+        Map<Integer, Integer> types = new LinkedHashMap<>();
+        Map<Integer, Integer> transfers = new LinkedHashMap<>();
+        for (int m = exported.nextSetBit(0); m >= 0; m = exported.nextSetBit(m + 1)) {
+            referenced.add(methods.name(m));
+            int[] edges = graph.edges(m);
+            if (edges != null) {
+                for (int edge : edges) {
+                    referenced.add(methods.name(edge));
+                }
+            }
+            localIds(types, graph.personalData(m));
+            localIds(transfers, graph.dataRecipients(m));
+        }
+        String[] names = referenced.toArray(new String[0]);
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            index.put(names[i], i);
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(types.size());
+        for (int type : types.keySet()) {
+            writeString(header, personalDataTypes.get(type));
+        }
+        header.writeInt(transfers.size());
+        for (int transfer : transfers.keySet()) {
+            writeString(header, recipients.get(transfer).policyURL);
+            writeString(header, recipients.get(transfer).recipientId);
+        }
+        header.writeInt(names.length);
+
+        int tables = headerBytes.size();
+        int nameStart = tables + 8 * names.length;
+        int[] nameOffsets = new int[names.length];
+        ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+        DataOutputStream nameData = new DataOutputStream(nameBytes);
+        for (int i = 0; i < names.length; i++) {
+            nameOffsets[i] = nameStart + nameData.size();
+            writeString(nameData, names[i]);
+        }
+
+        int recordStart = nameStart + nameData.size();
+        int[] recordOffsets = new int[names.length];
+        Arrays.fill(recordOffsets, -1);
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        for (int m = exported.nextSetBit(0); m >= 0; m = exported.nextSetBit(m + 1)) {
+            recordOffsets[index.get(methods.name(m))] = recordStart + records.size();
+            int[] edges = graph.edges(m);
+            edges = edges != null ? edges : IntArrays.EMPTY;
+            records.writeInt(edges.length);
+            for (int edge : edges) {
+                records.writeInt(index.get(methods.name(edge)));
+            }
+            writeBits(records, graph.personalData(m), types);
+            writeBits(records, graph.dataRecipients(m), transfers);
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        headerBytes.writeTo(data);
+        for (int offset : nameOffsets) {
+            data.writeInt(offset);
+        }
+        for (int offset : recordOffsets) {
+            data.writeInt(offset);
+        }
+        nameBytes.writeTo(data);
+        recordBytes.writeTo(data);
+        data.flush();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void localIds(Map<Integer, Integer> ids, BitSet values) {
+        if (values == null) {
+            return;
+        }
+        for (int id = values.nextSetBit(0); id >= 0; id = values.nextSetBit(id + 1)) {
+            if (!ids.containsKey(id)) {
+                ids.put(id, ids.size());
+            }
+        }
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits, Map<Integer, Integer> numbers)
+            throws IOException {
+        if (bits == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            out.writeInt(numbers.get(i));
+        }
+    }
+
+    private final class SummaryFile {
+
+        private final ByteBuffer buffer;
+        private final int[] types;
+        private final int[] transfers;
+        private final int[] ids;
+        private final int nameTable;
+        private final int recordTable;
+
+        SummaryFile(ByteBuffer buffer) {
+            this.buffer = buffer;
+            int position = 8;
+            types = new int[buffer.getInt(position)];
+            position += 4;
+            for (int i = 0; i < types.length; i++) {
+                types[i] = personalDataTypes.number(string(position));
+                position += 4 + buffer.getInt(position);
+            }
+            transfers = new int[buffer.getInt(position)];
+            position += 4;
+            for (int i = 0; i < transfers.length; i++) {
+                String policyURL = string(position);
+                position += 4 + buffer.getInt(position);
+                String recipientId = string(position);
+                position += 4 + buffer.getInt(position);
+                transfers[i] = recipients.number(new Transfer(policyURL, recipientId));
+            }
+            ids = new int[buffer.getInt(position)];
+            Arrays.fill(ids, -1);
+            nameTable = position + 4;
+            recordTable = nameTable + 4 * ids.length;
+        }
+
+        int find(String name) {
+            int low = 0;
+            int high = ids.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int c = string(buffer.getInt(nameTable + 4 * middle)).compareTo(name);
+                if (c < 0) {
+                    low = middle + 1;
+                } else if (c > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        boolean isDefined(int index) {
+            return buffer.getInt(recordTable + 4 * index) >= 0;
+        }
+
+        int[] read(int index, BitSet personalData, BitSet dataRecipients) {
+            int position = buffer.getInt(recordTable + 4 * index);
+            int[] edges = new int[buffer.getInt(position)];
+            position += 4;
+            for (int i = 0; i < edges.length; i++, position += 4) {
+                edges[i] = id(buffer.getInt(position));
+            }
+            int count = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < count; i++, position += 4) {
+                personalData.set(types[buffer.getInt(position)]);
+            }
+            count = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < count; i++, position += 4) {
+                dataRecipients.set(transfers[buffer.getInt(position)]);
+            }
+            return IntArrays.sortedUnique(edges, edges.length);
+        }
+
+        private int id(int index) {
+            if (ids[index] < 0) {
+                ids[index] = methods.intern(string(buffer.getInt(nameTable + 4 * index)));
+            }
+            return ids[index];
+        }
+
+        private String string(int position) {
+            byte[] bytes = new byte[buffer.getInt(position)];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + 4);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
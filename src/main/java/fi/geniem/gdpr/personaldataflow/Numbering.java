@@ -0,0 +1,39 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class Numbering<T> {
+
+    private final Map<T, Integer> numbers = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+
+    int number(T value) {
+        Integer number = numbers.get(value);
+        if (number == null) {
+            number = values.size();
+            values.add(value);
+            numbers.put(value, number);
+        }
+        return number;
+    }
+
+    T get(int number) {
+        return values.get(number);
+    }
+
+    <C extends Collection<T>> C collect(BitSet bits, C target) {
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            target.add(values.get(i));
+        }
+        return target;
+    }
+
+    int size() {
+        return values.size();
+    }
+}
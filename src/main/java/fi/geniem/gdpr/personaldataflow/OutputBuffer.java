@@ -0,0 +1,91 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class OutputBuffer extends ByteArrayOutputStream {
+
+    private long filesWritten;
+    private long bytesWritten;
+    private long filesUnchanged;
+
+    OutputBuffer() {
+        super(8192);
+    }
+
+    Writer writer() {
+        reset();
+        return new OutputStreamWriter(this, StandardCharsets.UTF_8);
+    }
+
+    boolean writeTo(Path path) throws IOException {
+        if (isUnchanged(path)) {
+            filesUnchanged++;
+            return false;
+        }
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(buf, 0, count);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        filesWritten++;
+        bytesWritten += count;
+        return true;
+    }
+
+    void writeTo(Filer filer, String name, Element... originatingElements) throws IOException {
+        FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", name, originatingElements);
+        try (OutputStream out = file.openOutputStream()) {
+            writeTo(out);
+        }
+        filesWritten++;
+        bytesWritten += count;
+    }
+
+    long getFilesWritten() {
+        return filesWritten;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    long getFilesUnchanged() {
+        return filesUnchanged;
+    }
+
+    private boolean isUnchanged(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) != count) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer existing = ByteBuffer.allocate(count);
+            while (existing.hasRemaining()) {
+                if (channel.read(existing) < 0) {
+                    return false;
+                }
+            }
+            existing.flip();
+            return existing.equals(ByteBuffer.wrap(buf, 0, count));
+        }
+    }
+}
@@ -1,19 +1,24 @@
 package fi.geniem.gdpr.personaldataflow;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
-import javax.lang.model.type.ArrayType;
-import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic.Kind;
 
 import com.sun.source.tree.*;
 import com.sun.source.util.*;
 import com.sun.tools.javac.code.Symbol;
-import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeInfo;
 
@@ -22,18 +27,55 @@ import com.sun.tools.javac.tree.TreeInfo;
 	"fi.geniem.gdpr.personaldataflow.PersonalDataHandler",
     "fi.geniem.gdpr.personaldataflow.PersonalDataEndpoint"
 })
-public class PersonalDataAnnotationProcessor extends AbstractProcessor implements TaskListener{
+@SupportedOptions({
+        PersonalDataMetricsProcessor.VERBOSE_OPTION,
+        PersonalDataMetricsProcessor.INCLUDE_OPTION,
+        PersonalDataMetricsProcessor.EXCLUDE_OPTION,
+        PersonalDataMetricsProcessor.PACKAGES_OPTION,
+        PersonalDataMetricsProcessor.REPORT_OPTION,
+        PersonalDataMetricsProcessor.REPORT_TOP_OPTION,
+        PersonalDataAnnotationProcessor.MAX_WARNINGS_OPTION,
+        PersonalDataAnnotationProcessor.SARIF_OPTION,
+        PersonalDataAnnotationProcessor.SARIF_ONLY_OPTION
+})
+public class PersonalDataAnnotationProcessor extends AbstractProcessor {
+
+    static final String MAX_WARNINGS_OPTION = "personaldataflow.maxWarnings";
+    static final String SARIF_OPTION = "personaldataflow.sarif";
+    static final String SARIF_ONLY_OPTION = "personaldataflow.sarifOnly";
+
+    private static final int DEFAULT_MAX_WARNINGS = 100;
 		
 	private Trees trees;
-	private TaskEvent taskEvt;
 	private Messager messager;
+
+	private TypeClassificationCache classifications;
+	private DeclaredTypes declaredTypes;
+	private TypeMentions typeMentions;
+	private CompilationReport report;
+	private int maxWarnings;
+	private SarifReport sarif;
+	private boolean sarifOnly;
+	private final Map<Symbol, Boolean> safeContainers = new HashMap<>();
+	private final Map<Symbol, Boolean> safeTargets = new HashMap<>();
 	
 	@Override
 	public synchronized void init(ProcessingEnvironment processingEnv) {
 		super.init(processingEnv);
-		trees = Trees.instance(processingEnv);
 		messager = processingEnv.getMessager();
-	    JavacTask.instance(processingEnv).setTaskListener(this);
+		AnalysisEngine engine = AnalysisEngine.instance(processingEnv);
+		trees = engine.getTrees();
+		classifications = engine.getClassifications();
+		declaredTypes = engine.getDeclaredTypes();
+		typeMentions = engine.getTypeMentions();
+		report = engine.getReport();
+		String max = processingEnv.getOptions().get(MAX_WARNINGS_OPTION);
+		maxWarnings = max != null ? Integer.parseInt(max) : DEFAULT_MAX_WARNINGS;
+		if (processingEnv.getOptions().containsKey(SARIF_OPTION)) {
+		    sarif = new SarifReport();
+		    sarifOnly = processingEnv.getOptions().containsKey(SARIF_ONLY_OPTION);
+		}
+		engine.add(new Validator());
 	}
 	
     @Override
@@ -42,334 +84,584 @@ public class PersonalDataAnnotationProcessor extends AbstractProcessor implement
     }
 
     private boolean isPersonalDataElement(Element field){
-        return hasPersonalDataAnnotation(field) || isFieldTypePersonalData(field);
+        return classifications.isPersonalData(field);
     }
 
     private boolean isPersonalData(Symbol field){
-        return hasPersonalDataAnnotation(field) || isFieldTypePersonalData(field) || hasPersonalDataTypeParameter(field);
+        return classifications.isPersonalData(field) || hasPersonalDataTypeParameter(field);
     }
 
     private boolean hasPersonalDataTypeParameter(Symbol field) {
-        //messager.printMessage(Kind.WARNING, "testing " + field.getTypeParameters().size() + field.getQualifiedName(), field);
-	    return false;
+        if (!(field instanceof Symbol.VarSymbol)) {
+            return false;
+        }
+        for (TypeMirror type : typeMentions.arguments(field.asType())) {
+            if (isPersonalDataElement(processingEnv.getTypeUtils().asElement(type))) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private boolean isFieldTypePersonalData(Element field){
-    	if(field == null){
-    		return false;
-    	}
-
-    	Element type = processingEnv.getTypeUtils().asElement(field.asType());
-
-    	if (type == null || !TypeElement.class.isAssignableFrom(type.getClass())) {
-    	    return false;
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+    	return SourceVersion.RELEASE_8;
+    }
+    
+    private static Symbol treeToElement(Tree tree){
+	    if (tree == null) {
+	        return null;
         }
-
-        TypeElement fieldTypeElement = (TypeElement) type;
-        return hasPersonalDataAnnotation(fieldTypeElement) || superClassIsPersonalData(fieldTypeElement);
+        return TreeInfo.symbolFor((JCTree) tree);
     }
 
-    private boolean superClassIsPersonalData(TypeElement ele){
-        if(ele == null){
+    private void warn(String text, Tree argument, CompilationUnitTree unit){
+        trees.printMessage(Kind.WARNING,text, argument, unit);
+    }
+    
+    private boolean isSafeContainer(Symbol element){
+        if(element == null){
             return false;
         }
+        Boolean safe = safeContainers.get(element);
+        if (safe == null) {
+            safe = isPersonalDataHandler(element)
+                    || isPersonalData(element)
+                    || isParentSafeContainer(element);
+            safeContainers.put(element, safe);
+        }
+        return safe;
+    }
+    
+    private boolean isParentSafeContainer(Symbol element){
+    	return element.getEnclosingElement() != null && isSafeContainer(element.getEnclosingElement());
+    }
 
-        Element type = processingEnv.getTypeUtils().asElement(ele.getSuperclass());
-
-        if (type == null || !TypeElement.class.isAssignableFrom(type.getClass())) {
+    private boolean isSafeTarget(Symbol method) {
+        if (method == null) {
             return false;
         }
-
-        TypeElement superType = (TypeElement) type;
-        return hasPersonalDataAnnotation(superType) || superClassIsPersonalData(superType);
+        Boolean safe = safeTargets.get(method);
+        if (safe == null) {
+            safe = isSafeContainer(method) || isEndpoint(method);
+            safeTargets.put(method, safe);
+        }
+        return safe;
     }
-    
-    @Override
-    public SourceVersion getSupportedSourceVersion() {
-    	return SourceVersion.RELEASE_8;
+
+    private static boolean isPersonalDataHandler(Element field){
+        return field != null && field.getAnnotation(PersonalDataHandler.class) != null;
     }
-    
-    private static boolean hasPersonalDataAnnotation(Element field){
-    	return field != null && field.getAnnotation(PersonalData.class) != null;
+
+    private static boolean isEndpoint(Element field){
+        return field != null && field.getAnnotation(PersonalDataEndpoint.class) != null;
     }
 
-    @Override 
-    public void finished(TaskEvent task) {
-        this.taskEvt = task;
-        if (taskEvt.getKind() == TaskEvent.Kind.ANALYZE) {
-            taskEvt.getCompilationUnit().accept(new TreeScanner<Void, Void>() {
-
-                @Override
-                public Void visitClass(ClassTree classTree, Void aVoid) {
-                    final Symbol classEle = treeToElement(classTree);
-                    classTree.accept(new TreeScanner<Void, Void>(){
-                        @Override
-                        public Void visitVariable(VariableTree variable, Void v) {
-                            Symbol element = treeToElement(variable);
-                            if(element == null || !element.getModifiers().contains(Modifier.STATIC)){
-                                return null;
-                            }
-                            variable.accept(new TreeScanner<Void, Void>() {
-                                @Override
-                                public Void visitParameterizedType(ParameterizedTypeTree parameterizedTypeTree, Void aVoid) {
-                                    for (Tree typeArgument : parameterizedTypeTree.getTypeArguments()) {
-                                        Symbol argEle = treeToElement(typeArgument);
-                                        if (isPersonalData(argEle) && !isSafeContainer(classEle)) {
-                                            warn("Unsafe @PersonalData: " + argEle, typeArgument);
-                                        }
-                                    }
-                                    return super.visitParameterizedType(parameterizedTypeTree, aVoid);
-                                }
-                            }, null);
-                            if(isPersonalData(element) && !isSafeContainer(classEle)){
-                                warn("Unsafe @PersonalData: " + element, variable);
-                            }
-                            return super.visitVariable(variable, v);
-                        }
-                    }, null);
-                    return super.visitClass(classTree, aVoid);
+    private class Validator implements TreeAnalysis {
+
+        private final List<Warning> warnings = new ArrayList<>();
+        private final Map<String, SourceWarnings> sourceWarnings = new LinkedHashMap<>();
+        private Frame[] frames = new Frame[16];
+        private int depth;
+        private int[] savedDepths = new int[64];
+        private int[] positions = new int[64];
+        private boolean[] pruned = new boolean[64];
+        private int level;
+
+        @Override
+        public boolean startUnit(TaskEvent task) {
+            depth = 0;
+            level = 0;
+            return true;
+        }
+
+        @Override
+        public void finishUnit(TaskEvent task) {
+            if (warnings.isEmpty()) {
+                return;
+            }
+            warnings.sort(null);
+            CompilationUnitTree unit = task.getCompilationUnit();
+            SourceWarnings file = sourceWarnings.computeIfAbsent(unit.getSourceFile().toUri().toString(),
+                    k -> new SourceWarnings(unit));
+            int emitted = 0;
+            int duplicates = 0;
+            int suppressed = 0;
+            for (Warning warning : warnings) {
+                if (!file.seen.add(((JCTree) warning.tree).getPreferredPosition() + "\u0000" + warning.text)) {
+                    duplicates++;
+                } else if (maxWarnings > 0 && file.emitted >= maxWarnings) {
+                    suppressed++;
+                } else {
+                    file.emitted++;
+                    emitted++;
+                    if (sarif != null) {
+                        addResult(warning, unit);
+                    }
+                    if (!sarifOnly) {
+                        warn(warning.text, warning.tree, unit);
+                    }
                 }
+            }
+            file.suppressed += suppressed;
+            if (report != null) {
+                report.count("validator.warnings", emitted);
+                report.count("validator.duplicates", duplicates);
+                report.count("validator.suppressed", suppressed);
+            }
+            warnings.clear();
+        }
 
-                @Override
-                public Void visitMethod(MethodTree methodTree, Void aVoid) {
-                    final Symbol methodEle = treeToElement(methodTree);
-                    methodTree.accept(new TreeScanner<Void, Void>(){
-
-                        @Override
-                        public Void visitMethodInvocation(MethodInvocationTree inv, Void aVoid) {
-                            Symbol method = treeToElement(inv.getMethodSelect());
-
-                            for(ExpressionTree argument : inv.getArguments()){
-                                Symbol argumentEle = treeToElement(argument);
-
-                                argument.accept(new TreeScanner<Void, Void>(){
-
-                                    @Override
-                                    public Void visitParameterizedType(ParameterizedTypeTree parameterizedTypeTree, Void aVoid) {
-                                        for(Tree typeArgument : parameterizedTypeTree.getTypeArguments()){
-                                            Symbol argEle = treeToElement(typeArgument);
-                                            if(isPersonalData(argEle) && !isSafeContainer(method) && !isEndpoint(method)) {
-                                                warn("Unsafe @PersonalData: " + argEle, typeArgument);
-                                            }
-                                        }
-                                        return super.visitParameterizedType(parameterizedTypeTree, aVoid);
-                                    }
-
-                                    @Override
-                                    public Void visitNewArray(NewArrayTree newArrayTree, Void aVoid) {
-                                        Symbol element = treeToElement(newArrayTree.getType());
-                                        if(element == null){
-                                            return null;
-                                        }
-                                        if(isPersonalData(element) && !isSafeContainer(method) && !isEndpoint(method)){
-                                            warn("Unsafe @PersonalData: " +element, newArrayTree);
-                                        }
-                                        return super.visitNewArray(newArrayTree, aVoid);
-                                    }
-
-                                    @Override
-                                    public Void visitNewClass(NewClassTree newClassTree, Void aVoid) {
-                                        Symbol element = treeToElement(newClassTree);
-                                        if(element == null){
-                                            return null;
-                                        }
-                                        Symbol ide = treeToElement(newClassTree.getIdentifier());
-                                        if(isPersonalData(ide) && !isSafeContainer(method) && !isEndpoint(method)){
-                                            warn("Unsafe @PersonalData: " + ide, newClassTree);
-                                        }
-                                        return super.visitNewClass(newClassTree, aVoid);
-                                    }
-
-                                    @Override
-                                    public Void visitIdentifier(IdentifierTree identifierTree, Void aVoid) {
-                                        Symbol ele = treeToElement(identifierTree);
-                                        TreePath path = Trees.instance(processingEnv).getPath(ele);
-                                        if(path == null){
-                                            return null;
-                                        }
-                                        TypeMirror tp = Trees.instance(processingEnv).getTypeMirror(path);
-                                        if (tp != null) {
-                                            switch (tp.getKind()) {
-                                                case ARRAY: {
-                                                    ArrayType at = (ArrayType) tp;
-                                                    Element array = processingEnv.getTypeUtils().asElement(at.getComponentType());
-                                                    if (isPersonalDataElement(array) && !isSafeContainer(method) && !isEndpoint(method)) {
-                                                        warn("Unsafe @PersonalData: " + argumentEle, identifierTree);
-                                                    }
-                                                    break;
-                                                }
-                                                case DECLARED: {
-                                                    DeclaredType dt = (DeclaredType) tp;
-                                                    for (TypeMirror mirror : dt.getTypeArguments()) {
-                                                        Element argumentType = processingEnv.getTypeUtils().asElement(mirror);
-                                                        if (isPersonalDataElement(argumentType) && !isSafeContainer(method) && !isEndpoint(method)) {
-                                                            warn("Unsafe @PersonalData: " + argumentEle, identifierTree);
-                                                        }
-                                                    }
-                                                }
-                                                default:
-                                                    break;
-                                            }
-                                        }
-                                        return super.visitIdentifier(identifierTree, aVoid);
-                                    }
-
-                                    @Override
-                                    public Void visitMemberSelect(MemberSelectTree memberSelectTree, Void aVoid) {
-                                        Element element = treeToElement(memberSelectTree);
-                                        if(element == null){
-                                            return null;
-                                        }
-                                        Symbol ide = treeToElement(memberSelectTree.getExpression());
-                                        if(isPersonalData(ide)
-                                                && !isSafeContainer(method)
-                                                && !isEndpoint(method)
-                                                && !isSafeContainer(methodEle)){
-                                            warn("Unsafe @PersonalData: " + ide, memberSelectTree);
-                                        }
-                                        return super.visitMemberSelect(memberSelectTree, aVoid);
-                                    }
-                                }, null);
-                                if(argumentEle == null){
-                                    continue;
-                                }
-
-                                if(isPersonalData(argumentEle) && !isSafeContainer(method) && !isEndpoint(method)){
-                                    warn("Unsafe @PersonalData: " + argumentEle, argument);
-                                }
-                            }
-                            return super.visitMethodInvocation(inv, aVoid);
-                        }
+        private void addResult(Warning warning, CompilationUnitTree unit) {
+            SourcePositions positions = trees.getSourcePositions();
+            LineMap lines = unit.getLineMap();
+            long start = positions.getStartPosition(unit, warning.tree);
+            long end = positions.getEndPosition(unit, warning.tree);
+            if (start < 0) {
+                start = ((JCTree) warning.tree).getPreferredPosition();
+            }
+            if (end < start) {
+                end = start;
+            }
+            sarif.add(unit.getSourceFile().toUri().toString(), lines.getLineNumber(start),
+                    lines.getColumnNumber(start), lines.getLineNumber(end), lines.getColumnNumber(end), warning.text);
+        }
 
-                        @Override
-                        public Void visitParameterizedType(ParameterizedTypeTree parameterizedTypeTree, Void aVoid) {
-                            for(Tree arg : parameterizedTypeTree.getTypeArguments()){
-                                Symbol argEle = treeToElement(arg);
-                                if(isPersonalData(argEle) && !isSafeContainer(methodEle)) {
-                                    warn("Unsafe @PersonalData: " + argEle, arg);
-                                }
-                            }
-                            return super.visitParameterizedType(parameterizedTypeTree, aVoid);
-                        }
+        @Override
+        public void compilationFinished() {
+            for (SourceWarnings file : sourceWarnings.values()) {
+                if (file.suppressed > 0 && !sarifOnly) {
+                    trees.printMessage(Kind.WARNING, file.suppressed + " more Unsafe @PersonalData warnings in this "
+                            + "file (" + MAX_WARNINGS_OPTION + "=" + maxWarnings + ")", file.unit, file.unit);
+                }
+            }
+            sourceWarnings.clear();
+            if (processingEnv.getOptions().containsKey(PersonalDataMetricsProcessor.VERBOSE_OPTION)) {
+                messager.printMessage(Kind.NOTE, "PersonalDataAnnotationProcessor " + classifications
+                        + ", " + declaredTypes.getLookups() + " declaration lookups, " + typeMentions);
+            }
+            if (report != null) {
+                report.count("validator.containers", safeContainers.size());
+                report.count("validator.targets", safeTargets.size());
+            }
+            safeContainers.clear();
+            safeTargets.clear();
+            if (sarif != null) {
+                try {
+                    sarif.write(Paths.get(processingEnv.getOptions().get(SARIF_OPTION)));
+                } catch (IOException e) {
+                    messager.printMessage(Kind.WARNING, "Failed to write SARIF report: " + e.toString());
+                }
+            }
+        }
 
-                        @Override
-                        public Void visitNewArray(NewArrayTree newArrayTree, Void aVoid) {
-                            Symbol element = treeToElement(newArrayTree.getType());
-                            if(element == null){
-                                return null;
-                            }
-                            if(isPersonalData(element) && !isSafeContainer(methodEle)){
-                                warn("Unsafe @PersonalData: " + element, newArrayTree);
-                            }
-                            return super.visitNewArray(newArrayTree, aVoid);
-                        }
+        @Override
+        public void enter(Tree tree, int at) {
+            if (level == savedDepths.length) {
+                savedDepths = Arrays.copyOf(savedDepths, level * 2);
+                positions = Arrays.copyOf(positions, level * 2);
+                pruned = Arrays.copyOf(pruned, level * 2);
+            }
+            savedDepths[level] = depth;
+            positions[level] = at;
+            pruned[level] = false;
+            level++;
+            if (tree instanceof ClassTree) {
+                push(Frame.CLASS, null, treeToElement(tree), at, 0);
+                return;
+            }
+            switch (tree.getKind()) {
+                case METHOD:
+                    isSafe(push(Frame.METHOD, null, treeToElement(tree), at, 0));
+                    break;
+                case VARIABLE:
+                    pruned[level - 1] = enterVariable((VariableTree) tree, at);
+                    break;
+                case ARRAY_TYPE:
+                    enterArrayType((ArrayTypeTree) tree, at);
+                    break;
+                case PARAMETERIZED_TYPE:
+                    enterParameterizedType((ParameterizedTypeTree) tree, at);
+                    break;
+                case NEW_ARRAY:
+                    pruned[level - 1] = enterNewArray((NewArrayTree) tree, at);
+                    break;
+                case NEW_CLASS:
+                    pruned[level - 1] = enterNewClass((NewClassTree) tree, at);
+                    break;
+                case TYPE_CAST:
+                    pruned[level - 1] = enterTypeCast((TypeCastTree) tree, at);
+                    break;
+                case TYPE_PARAMETER:
+                    pruned[level - 1] = enterTypeParameter((TypeParameterTree) tree, at);
+                    break;
+                case IDENTIFIER:
+                    enterIdentifier((IdentifierTree) tree, at);
+                    break;
+                case MEMBER_SELECT:
+                    pruned[level - 1] = enterMemberSelect((MemberSelectTree) tree, at);
+                    break;
+                default:
+                    break;
+            }
+        }
 
-                        @Override
-                        public Void visitTypeCast(TypeCastTree typeCastTree, Void aVoid) {
-                            Symbol element = treeToElement(typeCastTree.getType());
-                            if(element == null){
-                                return null;
-                            }
-                            if(isPersonalData(element) && !isSafeContainer(methodEle)){
-                                warn("Unsafe @PersonalData: " + element, typeCastTree);
-                            }
-                            return super.visitTypeCast(typeCastTree, aVoid);
-                        }
+        @Override
+        public void exit(Tree tree, int at) {
+            level--;
+            depth = savedDepths[level];
+            if (pruned[level]) {
+                restore(at);
+            }
+        }
 
-                        @Override
-                        public Void visitNewClass(NewClassTree newClassTree, Void aVoid) {
-                            Symbol element = treeToElement(newClassTree);
-                            if(element == null){
-                                return null;
-                            }
-                            Symbol ide = treeToElement(newClassTree.getIdentifier());
-                            if(isPersonalData(ide) && !isSafeContainer(methodEle)){
-                                warn("Unsafe @PersonalData: " + ide, newClassTree);
-                            }
-                            return super.visitNewClass(newClassTree, aVoid);
-                        }
+        @Override
+        public void enterArgument(MethodInvocationTree inv, ExpressionTree argument, int index) {
+            int at = positions[level - 1];
+            int top = savedDepths[level - 1];
+            int phase = index * 2;
+            Symbol method = treeToElement(inv.getMethodSelect());
+            Symbol argumentEle = treeToElement(argument);
+            for (int i = 0; i < top; i++) {
+                Frame frame = frames[i];
+                if (frame.kind != Frame.METHOD || frame.prunedAt != 0) {
+                    continue;
+                }
+                Frame target = push(Frame.ARGUMENT, frame, method, at, phase);
+                target.argument = argumentEle;
+                if (argumentEle != null && isPersonalData(argumentEle) && !isSafe(target)) {
+                    report(frame, at, phase + 1, argumentEle, argument);
+                }
+            }
+        }
 
-                        @Override
-                        public Void visitVariable(VariableTree variable, Void v) {
-                            Symbol element = treeToElement(variable.getType());
-                            variable.accept(new TreeScanner<Void, Void>(){
-                                @Override
-                                public Void visitArrayType(ArrayTypeTree arrayTypeTree, Void aVoid) {
-                                    Symbol element = treeToElement(arrayTypeTree.getType());
-                                    if(isPersonalData(element) && !isSafeContainer(methodEle)){
-                                        warn("Unsafe @PersonalData: " + element, arrayTypeTree);
-                                    }
-                                    return super.visitArrayType(arrayTypeTree, aVoid);
-                                }
-                            }, null);
-                            if(element == null){
-                                return null;
-                            }
-                            if(isPersonalData(element) && !isSafeContainer(methodEle)){
-                                warn("Unsafe @PersonalData: " + variable, variable);
-                            }
-                            return super.visitVariable(variable, v);
-                        }
+        @Override
+        public void exitArgument(MethodInvocationTree inv, ExpressionTree argument, int index) {
+            depth = savedDepths[level - 1];
+        }
+
+        private boolean enterVariable(VariableTree variable, int at) {
+            int top = depth;
+            boolean pruned = false;
+            Symbol element = treeToElement(variable);
+            Symbol type = treeToElement(variable.getType());
+            for (int i = 0; i < top; i++) {
+                Frame frame = frames[i];
+                if (frame.prunedAt != 0) {
+                    continue;
+                }
+                if (frame.kind == Frame.CLASS) {
+                    if (element == null || !element.getModifiers().contains(Modifier.STATIC)) {
+                        frame.prunedAt = at;
+                        pruned = true;
+                        continue;
+                    }
+                    push(Frame.STATIC_FIELD, frame, null, at, 0);
+                    if (isPersonalData(element) && !isSafe(frame)) {
+                        report(frame, at, 1, element, variable);
+                    }
+                } else if (frame.kind == Frame.METHOD) {
+                    push(Frame.VARIABLE, frame, null, at, 0);
+                    if (type == null) {
+                        frame.prunedAt = at;
+                        pruned = true;
+                    } else if (isPersonalData(type) && !isSafe(frame)) {
+                        report(frame, at, 1, variable, variable);
+                    }
+                }
+            }
+            return pruned;
+        }
+
+        private void enterArrayType(ArrayTypeTree arrayTypeTree, int at) {
+            Symbol element = treeToElement(arrayTypeTree.getType());
+            if (isPersonalData(element)) {
+                for (int i = 0; i < depth; i++) {
+                    Frame frame = frames[i];
+                    if (frame.kind == Frame.VARIABLE && !isSafe(frame)) {
+                        report(frame, at, element, arrayTypeTree);
+                    }
+                }
+            }
+        }
 
-                        @Override
-                        public Void visitTypeParameter(TypeParameterTree typeParameterTree, Void aVoid) {
-                            Element element = treeToElement(typeParameterTree);
-                            if(element == null){
-                                return null;
-                            }
-                            for (Tree b : typeParameterTree.getBounds()) {
-                                Symbol ide = treeToElement(b);
-                                if(isPersonalData(ide) && !isSafeContainer(methodEle)){
-                                    warn("Unsafe @PersonalData: " + ide, typeParameterTree);
-                                }
-                            }
-                            Symbol ide = treeToElement(typeParameterTree);
-                            if(isPersonalData(ide) && !isSafeContainer(methodEle)){
-                                warn("Unsafe @PersonalData: " + ide, typeParameterTree);
-                            }
-                            return super.visitTypeParameter(typeParameterTree, aVoid);
+        private void enterParameterizedType(ParameterizedTypeTree parameterizedTypeTree, int at) {
+            for (Tree typeArgument : parameterizedTypeTree.getTypeArguments()) {
+                Tree argument = typeArgument;
+                while (argument instanceof WildcardTree || argument instanceof ArrayTypeTree) {
+                    argument = argument instanceof WildcardTree ? ((WildcardTree) argument).getBound()
+                            : ((ArrayTypeTree) argument).getType();
+                }
+                if (argument == null) {
+                    continue;
+                }
+                Symbol argEle = treeToElement(argument);
+                if (argEle instanceof Symbol.TypeVariableSymbol) {
+                    for (TypeMirror bound : typeMentions.all(argEle.asType())) {
+                        Element boundEle = processingEnv.getTypeUtils().asElement(bound);
+                        if (isPersonalDataElement(boundEle)) {
+                            reportTypeArgument(at, boundEle, typeArgument);
                         }
+                    }
+                } else if (isPersonalData(argEle)) {
+                    reportTypeArgument(at, argEle, typeArgument);
+                }
+            }
+        }
 
-                    }, null);
-                    return super.visitMethod(methodTree, aVoid);
+        private void reportTypeArgument(int at, Element argEle, Tree typeArgument) {
+            for (int i = 0; i < depth; i++) {
+                Frame frame = frames[i];
+                if (frame.kind != Frame.CLASS && frame.kind != Frame.VARIABLE
+                        && frame.prunedAt == 0 && !isSafe(frame)) {
+                    report(frame, at, argEle, typeArgument);
                 }
-            }, null);
+            }
         }
-    }
 
-    private static Symbol treeToElement(Tree tree){
-	    if (tree == null) {
-	        return null;
+        private boolean enterNewArray(NewArrayTree newArrayTree, int at) {
+            boolean pruned = false;
+            Symbol element = treeToElement(newArrayTree.getType());
+            for (int i = 0; i < depth; i++) {
+                Frame frame = frames[i];
+                if ((frame.kind != Frame.METHOD && frame.kind != Frame.ARGUMENT) || frame.prunedAt != 0) {
+                    continue;
+                }
+                if (element == null) {
+                    frame.prunedAt = at;
+                    pruned = true;
+                } else if (isPersonalData(element) && !isSafe(frame)) {
+                    report(frame, at, element, newArrayTree);
+                }
+            }
+            return pruned;
         }
-        return TreeInfo.symbolFor((JCTree) tree);
-    }
 
-    private void warn(String text, Tree argument){
-        trees.printMessage(Kind.WARNING,text, argument, taskEvt.getCompilationUnit());
-    }
-    
-    private boolean isSafeContainer(Symbol element){
-        if(element == null){
+        private boolean enterNewClass(NewClassTree newClassTree, int at) {
+            boolean pruned = false;
+            Symbol element = treeToElement(newClassTree);
+            Symbol ide = element != null ? treeToElement(newClassTree.getIdentifier()) : null;
+            for (int i = 0; i < depth; i++) {
+                Frame frame = frames[i];
+                if ((frame.kind != Frame.METHOD && frame.kind != Frame.ARGUMENT) || frame.prunedAt != 0) {
+                    continue;
+                }
+                if (element == null) {
+                    frame.prunedAt = at;
+                    pruned = true;
+                } else if (isPersonalData(ide) && !isSafe(frame)) {
+                    report(frame, at, ide, newClassTree);
+                }
+            }
+            return pruned;
+        }
+
+        private boolean enterTypeCast(TypeCastTree typeCastTree, int at) {
+            boolean pruned = false;
+            Symbol element = treeToElement(typeCastTree.getType());
+            for (int i = 0; i < depth; i++) {
+                Frame frame = frames[i];
+                if (frame.kind != Frame.METHOD || frame.prunedAt != 0) {
+                    continue;
+                }
+                if (element == null) {
+                    frame.prunedAt = at;
+                    pruned = true;
+                } else if (isPersonalData(element) && !isSafe(frame)) {
+                    report(frame, at, element, typeCastTree);
+                }
+            }
+            return pruned;
+        }
+
+        private boolean enterTypeParameter(TypeParameterTree typeParameterTree, int at) {
+            boolean pruned = false;
+            Symbol element = treeToElement(typeParameterTree);
+            for (int i = 0; i < depth; i++) {
+                Frame frame = frames[i];
+                if (frame.kind != Frame.METHOD || frame.prunedAt != 0) {
+                    continue;
+                }
+                if (element == null) {
+                    frame.prunedAt = at;
+                    pruned = true;
+                    continue;
+                }
+                for (Tree b : typeParameterTree.getBounds()) {
+                    Symbol ide = treeToElement(b);
+                    if (isPersonalData(ide) && !isSafe(frame)) {
+                        report(frame, at, ide, typeParameterTree);
+                    }
+                }
+                if (isPersonalData(element) && !isSafe(frame)) {
+                    report(frame, at, element, typeParameterTree);
+                }
+            }
+            return pruned;
+        }
+
+        private void enterIdentifier(IdentifierTree identifierTree, int at) {
+            if (!hasActive(Frame.ARGUMENT)) {
+                return;
+            }
+            int mentions = declaredTypes.personalDataMentions(treeToElement(identifierTree),
+                    PersonalDataAnnotationProcessor.this::isPersonalDataElement).size();
+            for (int i = 0; i < mentions; i++) {
+                reportArguments(at, identifierTree);
+            }
+        }
+
+        private boolean enterMemberSelect(MemberSelectTree memberSelectTree, int at) {
+            boolean pruned = false;
+            if (hasActive(Frame.ARGUMENT)) {
+                Element element = treeToElement(memberSelectTree);
+                Symbol ide = element != null ? treeToElement(memberSelectTree.getExpression()) : null;
+                for (int i = 0; i < depth; i++) {
+                    Frame frame = frames[i];
+                    if (frame.kind != Frame.ARGUMENT || frame.prunedAt != 0) {
+                        continue;
+                    }
+                    if (element == null) {
+                        frame.prunedAt = at;
+                        pruned = true;
+                    } else if (isPersonalData(ide) && !isSafe(frame) && !isSafe(frame.scope)) {
+                        report(frame, at, ide, memberSelectTree);
+                    }
+                }
+            }
+            return pruned;
+        }
+
+        private void reportArguments(int at, Tree tree) {
+            for (int i = 0; i < depth; i++) {
+                Frame frame = frames[i];
+                if (frame.kind == Frame.ARGUMENT && frame.prunedAt == 0 && !isSafe(frame)) {
+                    report(frame, at, frame.argument, tree);
+                }
+            }
+        }
+
+        private boolean hasActive(int kind) {
+            for (int i = 0; i < depth; i++) {
+                if (frames[i].kind == kind && frames[i].prunedAt == 0) {
+                    return true;
+                }
+            }
             return false;
         }
-    	return isPersonalDataHandler(element) 
-    			|| isPersonalData(element)
-    			|| isParentSafeContainer(element);
-    }
-    
-    private boolean isParentSafeContainer(Symbol element){
-    	return element.getEnclosingElement() != null && isSafeContainer(element.getEnclosingElement());
+
+        private Frame push(int kind, Frame scope, Symbol symbol, int key, int phase) {
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+            }
+            Frame frame = frames[depth];
+            if (frame == null) {
+                frame = new Frame();
+                frames[depth] = frame;
+            }
+            depth++;
+            frame.kind = kind;
+            frame.scope = scope;
+            frame.symbol = symbol;
+            frame.argument = null;
+            frame.key = key;
+            frame.phase = phase;
+            frame.prunedAt = 0;
+            frame.safe = null;
+            return frame;
+        }
+
+        private void restore(int at) {
+            for (int i = 0; i < depth; i++) {
+                if (frames[i].prunedAt == at) {
+                    frames[i].prunedAt = 0;
+                }
+            }
+        }
+
+        private boolean isSafe(Frame frame) {
+            if (frame.kind == Frame.STATIC_FIELD || frame.kind == Frame.VARIABLE) {
+                return isSafe(frame.scope);
+            }
+            if (frame.safe == null) {
+                frame.safe = frame.kind == Frame.ARGUMENT ? isSafeTarget(frame.symbol) : isSafeContainer(frame.symbol);
+            }
+            return frame.safe;
+        }
+
+        private void report(Frame frame, int at, Object subject, Tree tree) {
+            if (frame.scope == null) {
+                warnings.add(new Warning(frame.key, at, 0, 0, subject, tree));
+            } else {
+                warnings.add(new Warning(frame.scope.key, frame.key, frame.phase, at, subject, tree));
+            }
+        }
+
+        private void report(Frame scope, int at, int phase, Object subject, Tree tree) {
+            warnings.add(new Warning(scope.key, at, phase, 0, subject, tree));
+        }
     }
 
-    private static boolean isPersonalDataHandler(Element field){
-        return field != null && field.getAnnotation(PersonalDataHandler.class) != null;
+    private static final class Frame {
+
+        static final int CLASS = 0;
+        static final int METHOD = 1;
+        static final int STATIC_FIELD = 2;
+        static final int VARIABLE = 3;
+        static final int ARGUMENT = 4;
+
+        int kind;
+        Frame scope;
+        Symbol symbol;
+        Symbol argument;
+        int key;
+        int phase;
+        int prunedAt;
+        Boolean safe;
     }
 
-    private static boolean isEndpoint(Element field){
-        return field != null && field.getAnnotation(PersonalDataEndpoint.class) != null;
+    private static final class SourceWarnings {
+
+        final CompilationUnitTree unit;
+        final Set<String> seen = new HashSet<>();
+        int emitted;
+        int suppressed;
+
+        SourceWarnings(CompilationUnitTree unit) {
+            this.unit = unit;
+        }
     }
 
-	@Override
-	public void started(TaskEvent arg0) {
-	}
-}
\ No newline at end of file
+    private static final class Warning implements Comparable<Warning> {
+
+        final int scope;
+        final int trigger;
+        final int phase;
+        final int position;
+        final String text;
+        final Tree tree;
+
+        Warning(int scope, int trigger, int phase, int position, Object subject, Tree tree) {
+            this.scope = scope;
+            this.trigger = trigger;
+            this.phase = phase;
+            this.position = position;
+            this.text = "Unsafe @PersonalData: " + subject;
+            this.tree = tree;
+        }
+
+        @Override
+        public int compareTo(Warning other) {
+            if (scope != other.scope) {
+                return Integer.compare(scope, other.scope);
+            }
+            if (trigger != other.trigger) {
+                return Integer.compare(trigger, other.trigger);
+            }
+            if (phase != other.phase) {
+                return Integer.compare(phase, other.phase);
+            }
+            return Integer.compare(position, other.position);
+        }
+    }
+}
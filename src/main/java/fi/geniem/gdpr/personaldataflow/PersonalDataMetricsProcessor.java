@@ -3,447 +3,670 @@ package fi.geniem.gdpr.personaldataflow;
 import com.sun.source.tree.*;
 import com.sun.source.util.*;
 import com.sun.tools.javac.code.Symbol;
-import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeInfo;
-import javafx.util.Pair;
-import org.springframework.data.mongodb.core.mapping.Document;
+import fi.geniem.gdpr.personaldataflow.ClassModel.MethodModel;
+import fi.geniem.gdpr.personaldataflow.ClassSummarizer.MethodResult;
+import fi.geniem.gdpr.personaldataflow.MethodSummaryIndex.UnitSummary;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
-import javax.lang.model.type.ArrayType;
-import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 import java.io.*;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 
 @SupportedAnnotationTypes({"*",})
-public class PersonalDataMetricsProcessor extends AbstractProcessor implements TaskListener {
+@SupportedOptions({
+        PersonalDataMetricsProcessor.VERBOSE_OPTION,
+        PersonalDataMetricsProcessor.INDEX_OPTION,
+        PersonalDataMetricsProcessor.OUTPUT_DIR_OPTION,
+        PersonalDataMetricsProcessor.MANIFEST_OPTION,
+        PersonalDataMetricsProcessor.FILER_OPTION,
+        PersonalDataMetricsProcessor.EXPORT_OPTION,
+        PersonalDataMetricsProcessor.DEMAND_OPTION,
+        PersonalDataMetricsProcessor.MEMORY_BUDGET_OPTION,
+        PersonalDataMetricsProcessor.SPILL_DIR_OPTION,
+        PersonalDataMetricsProcessor.INCLUDE_OPTION,
+        PersonalDataMetricsProcessor.EXCLUDE_OPTION,
+        PersonalDataMetricsProcessor.PACKAGES_OPTION,
+        PersonalDataMetricsProcessor.REPORT_OPTION,
+        PersonalDataMetricsProcessor.REPORT_TOP_OPTION
+})
+public class PersonalDataMetricsProcessor extends AbstractProcessor {
+
+    static final String VERBOSE_OPTION = "personaldataflow.verbose";
+    static final String INDEX_OPTION = "personaldataflow.index";
+    static final String OUTPUT_DIR_OPTION = "personaldataflow.outputDir";
+    static final String MANIFEST_OPTION = "personaldataflow.manifest";
+    static final String FILER_OPTION = "personaldataflow.filer";
+    static final String EXPORT_OPTION = "personaldataflow.export";
+    static final String DEMAND_OPTION = "personaldataflow.demand";
+    static final String MEMORY_BUDGET_OPTION = "personaldataflow.memoryBudget";
+    static final String SPILL_DIR_OPTION = "personaldataflow.spillDir";
+    static final String INCLUDE_OPTION = "personaldataflow.include";
+    static final String EXCLUDE_OPTION = "personaldataflow.exclude";
+    static final String PACKAGES_OPTION = "personaldataflow.packages";
+    static final String REPORT_OPTION = "personaldataflow.report";
+    static final String REPORT_TOP_OPTION = "personaldataflow.reportTop";
+
+    private static final String DEFAULT_OUTPUT_DIR = "/home/pdtree/";
+    private static final String DEFAULT_RESOURCE_DIR = "META-INF/personaldataflow/";
 
-    private Trees trees;
-    private TaskEvent taskEvt;
     private Messager messager;
-
-    private Map<String, Set<String>> methodDependencies;
-    private Map<String, List<Set<String>>> interfaceImplementations;
-
-    private Map<String, Set<String>> methodPersonalData;
-    private Map<String, Set<Transfer>> methodDataRecipients;
-    private Set<WaitList> waitLists;
-
+    private AnalysisEngine engine;
+    private Path outputDir;
+    private Path manifestFile;
+    private boolean filer;
+    private Map<String, Set<Element>> origins;
+    private List<Symbol.ClassSymbol> compiledTypes;
+    private OutputBuffer output;
+    private PurposeWriter purposes;
+
+    private MethodTable methods;
+    private Map<Symbol, Integer> methodIds;
+    private Map<Symbol, Boolean> ownersInScope;
+    private Numbering<String> personalDataTypes;
+    private Numbering<Transfer> transfers;
+    private CallGraph graph;
+    private SpillStore spill;
+    private Map<String, Set<Integer>> controllers;
+    private Map<Integer, MethodScan> deferredScans;
+
+    private ClassHierarchy hierarchy;
+    private TypeClassificationCache classifications;
+    private DeclaredTypes declaredTypes;
+    private TypeMentions typeMentions;
+    private AnalysisTracker tracker;
+    private SourceScope scope;
+    private CompilationReport report;
+
+    private ModuleSummaries libraries;
+    private BitSet imported;
+    private boolean exportSummaries;
+
+    private MethodSummaryIndex index;
+    private boolean indexReplayed;
+    private Map<String, UnitSummary> analyzedUnits;
+    private Set<UnitSummary> replayedUnits;
+    private BitSet changedMethods;
+    private TypeFingerprints fingerprints;
 
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
-        trees = Trees.instance(processingEnv);
         messager = processingEnv.getMessager();
-        JavacTask.instance(processingEnv).setTaskListener(this);
-        methodDependencies = new HashMap<>();
-        methodPersonalData = new HashMap<>();
-        methodDataRecipients = new HashMap<>();
-        interfaceImplementations = new HashMap<>();
-        waitLists = new HashSet<>();
+        engine = AnalysisEngine.instance(processingEnv);
+        filer = processingEnv.getOptions().containsKey(FILER_OPTION);
+        outputDir = Paths.get(processingEnv.getOptions().getOrDefault(OUTPUT_DIR_OPTION,
+                filer ? DEFAULT_RESOURCE_DIR : DEFAULT_OUTPUT_DIR));
+        origins = filer ? new HashMap<>() : null;
+        compiledTypes = new ArrayList<>();
+        String manifest = processingEnv.getOptions().get(MANIFEST_OPTION);
+        manifestFile = manifest != null ? Paths.get(manifest) : null;
+        output = new OutputBuffer();
+        methods = new MethodTable();
+        methodIds = new HashMap<>();
+        ownersInScope = new HashMap<>();
+        personalDataTypes = new Numbering<>();
+        transfers = new Numbering<>();
+        String budget = processingEnv.getOptions().get(MEMORY_BUDGET_OPTION);
+        if (budget != null) {
+            spill = new SpillStore(Long.parseLong(budget) << 20, Paths.get(processingEnv.getOptions()
+                    .getOrDefault(SPILL_DIR_OPTION, System.getProperty("java.io.tmpdir"))));
+        }
+        graph = new CallGraph(methods, spill);
+        purposes = new PurposeWriter(graph, personalDataTypes, transfers, output, manifestFile != null ? "" : "    ");
+        controllers = new LinkedHashMap<>();
+        deferredScans = processingEnv.getOptions().containsKey(DEMAND_OPTION) ? new HashMap<>() : null;
+        hierarchy = new ClassHierarchy(processingEnv.getElementUtils(), processingEnv.getTypeUtils());
+        classifications = engine.getClassifications();
+        declaredTypes = engine.getDeclaredTypes();
+        typeMentions = engine.getTypeMentions();
+        tracker = engine.getTracker();
+        scope = engine.getScope();
+        report = engine.getReport();
+        analyzedUnits = new HashMap<>();
+        replayedUnits = new LinkedHashSet<>();
+        changedMethods = new BitSet();
+        fingerprints = new TypeFingerprints(processingEnv.getElementUtils(), processingEnv.getTypeUtils());
+        libraries = new ModuleSummaries(engine.getClassPath(StandardLocation.CLASS_PATH), methods,
+                personalDataTypes, transfers);
+        imported = new BitSet();
+        exportSummaries = processingEnv.getOptions().containsKey(EXPORT_OPTION);
+        String indexFile = processingEnv.getOptions().get(INDEX_OPTION);
+        if (indexFile != null) {
+            try {
+                index = MethodSummaryIndex.load(Paths.get(indexFile), methods, personalDataTypes, transfers);
+            } catch (IOException e) {
+                messager.printMessage(Kind.WARNING, "Failed to read summary index: " + e.toString());
+            }
+        }
+        engine.add(new PurposeAnalysis());
     }
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof Symbol.ClassSymbol && engine.getTrees().getPath(element) == null) {
+                compiledTypes.add((Symbol.ClassSymbol) element);
+            }
+        }
         return false;
     }
 
     private boolean isPersonalData(Element field) {
-        return hasPersonalDataAnnotation(field) || isFieldTypePersonalData(field);
+        return classifications.isPersonalData(field);
     }
 
     private boolean isDatabaseEntity(Element field) {
-        return hasEntityAnnotation(field) || isFieldTypeEntity(field);
+        return classifications.isDatabaseEntity(field);
     }
 
-    private boolean isFieldTypePersonalData(Element field) {
-        if (field == null) {
-            return false;
-        }
-
-        Element type = processingEnv.getTypeUtils().asElement(field.asType());
+    private boolean isPersonalDataEntity(Element field) {
+        return isDatabaseEntity(field) && isPersonalData(field);
+    }
 
-        if (type == null || !TypeElement.class.isAssignableFrom(type.getClass())) {
-            return false;
-        }
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.RELEASE_8;
+    }
 
-        TypeElement fieldTypeElement = (TypeElement) type;
-        return hasPersonalDataAnnotation(fieldTypeElement) || superClassIsPersonalData(fieldTypeElement);
+    private static boolean isApplicationEntryPoint(Element field) {
+        return field != null && field.getAnnotation(RequestMapping.class) != null;
     }
 
-    private boolean isFieldTypeEntity(Element field) {
-        if (field == null) {
-            return false;
+    private void compilationFinished() {
+        if (!compiledTypes.isEmpty()) {
+            replayCompiledTypes();
         }
-
-        Element type = processingEnv.getTypeUtils().asElement(field.asType());
-
-        if (type == null || !TypeElement.class.isAssignableFrom(type.getClass())) {
-            return false;
+        if (deferredScans != null && !deferredScans.isEmpty()) {
+            if (index != null || exportSummaries) {
+                resolveDeferredScans(null);
+            } else {
+                Set<Integer> entryPoints = new HashSet<>();
+                for (Set<Integer> controller : controllers.values()) {
+                    entryPoints.addAll(controller);
+                }
+                resolveDeferredScans(graph.reachable(entryPoints));
+            }
         }
 
-        TypeElement fieldTypeElement = (TypeElement) type;
-        return hasEntityAnnotation(fieldTypeElement) || superClassIsEntity(fieldTypeElement);
-    }
-
-    private boolean superClassIsPersonalData(TypeElement ele) {
-        if (ele == null) {
-            return false;
+        if (index != null) {
+            for (UnitSummary unit : replayedUnits) {
+                if (!unit.entryPoints.isEmpty() && (filer || manifestFile != null
+                        || !Files.exists(outputPath(unit.controller)) || graph.reaches(unit.entryPoints, changedMethods))) {
+                    controllers.put(unit.controller, unit.entryPoints);
+                }
+                index.put(unit);
+            }
+            for (UnitSummary unit : analyzedUnits.values()) {
+                if (unit.hash != null) {
+                    index.put(unit);
+                }
+            }
+            changedMethods.clear();
+            try {
+                index.save();
+            } catch (IOException e) {
+                messager.printMessage(Kind.WARNING, "Failed to write summary index: " + e.toString());
+            }
         }
 
-        Element type = processingEnv.getTypeUtils().asElement(ele.getSuperclass());
-
-        if (type == null || !TypeElement.class.isAssignableFrom(type.getClass())) {
-            return false;
+        importLibrarySummaries();
+        if (exportSummaries) {
+            exportSummaries();
         }
 
-        TypeElement superType = (TypeElement) type;
-        return hasPersonalDataAnnotation(superType) || superClassIsPersonalData(superType);
-    }
-
-    private boolean superClassIsEntity(TypeElement ele) {
-        if (ele == null) {
-            return false;
+        long start = System.nanoTime();
+        int written = controllers.size();
+        if (manifestFile != null) {
+            writeManifest();
+        } else {
+            for (Map.Entry<String, Set<Integer>> controller : controllers.entrySet()) {
+                writePurposes(controller.getKey(), controller.getValue());
+            }
         }
-
-        Element type = processingEnv.getTypeUtils().asElement(ele.getSuperclass());
-
-        if (type == null || !TypeElement.class.isAssignableFrom(type.getClass())) {
-            return false;
+        controllers.clear();
+
+        if (report != null) {
+            report.phase("writePurposes", System.nanoTime() - start);
+            report.set("graph.methods", graph.size());
+            report.set("graph.methodNames", methods.size());
+            report.set("graph.closures", graph.getClosures());
+            report.set("graph.expansions", graph.getExpansions());
+            report.set("personalDataTypes", personalDataTypes.size());
+            report.set("transfers", transfers.size());
+            report.set("controllers", written);
+            report.set("output.files", output.getFilesWritten());
+            report.set("output.bytes", output.getBytesWritten());
+            report.set("output.unchanged", output.getFilesUnchanged());
+            if (spill != null) {
+                report.set("spill.segments", spill.getSegments());
+                report.set("spill.methods", spill.getSpilledMethods());
+                report.set("spill.bytes", spill.getSpilledBytes());
+                report.set("spill.reads", spill.getReads());
+            }
+        }
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                messager.printMessage(Kind.WARNING, "Failed to delete spill files: " + e.toString());
+            }
         }
 
-        TypeElement superType = (TypeElement) type;
-        return hasEntityAnnotation(superType) || superClassIsEntity(superType);
+        if (processingEnv.getOptions().containsKey(VERBOSE_OPTION)) {
+            messager.printMessage(Kind.NOTE, "PersonalDataMetricsProcessor " + classifications
+                    + ", " + declaredTypes.getLookups() + " declaration lookups, " + typeMentions);
+            messager.printMessage(Kind.NOTE, "PersonalDataMetricsProcessor wrote " + output.getFilesWritten()
+                    + " files (" + output.getBytesWritten() + " bytes), " + output.getFilesUnchanged() + " unchanged");
+        }
     }
 
-    @Override
-    public SourceVersion getSupportedSourceVersion() {
-        return SourceVersion.RELEASE_8;
+    private void importLibrarySummaries() {
+        BitSet visited = new BitSet();
+        int[] stack = new int[16];
+        int size = 0;
+        for (Set<Integer> entryPoints : controllers.values()) {
+            for (int entryPoint : entryPoints) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                stack[size++] = entryPoint;
+            }
+        }
+        try {
+            while (size > 0) {
+                int method = stack[--size];
+                if (visited.get(method)) {
+                    continue;
+                }
+                visited.set(method);
+                if (!graph.contains(method)) {
+                    MethodSummary summary = libraries.find(method);
+                    if (summary != null) {
+                        graph.add(summary);
+                        imported.set(method);
+                    }
+                }
+                int[] edges = graph.edges(method);
+                if (edges == null) {
+                    continue;
+                }
+                for (int edge : edges) {
+                    if (!visited.get(edge)) {
+                        if (size == stack.length) {
+                            stack = Arrays.copyOf(stack, size * 2);
+                        }
+                        stack[size++] = edge;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            messager.printMessage(Kind.WARNING, "Failed to read library summaries: " + e.toString());
+        }
+        if (report != null) {
+            report.set("libraries.files", libraries.getFiles());
+            report.set("libraries.lookups", libraries.getLookups());
+            report.set("libraries.imported", libraries.getHits());
+            report.set("libraries.bytesMapped", libraries.getBytesMapped());
+            report.set("libraries.bytesRead", libraries.getBytesRead());
+        }
     }
 
-    private static boolean hasPersonalDataAnnotation(Element field) {
-        return field != null && field.getAnnotation(PersonalData.class) != null;
+    private void exportSummaries() {
+        BitSet exported = new BitSet();
+        for (int method = 0; method < methods.size(); method++) {
+            if (!imported.get(method) && graph.edges(method) != null) {
+                exported.set(method);
+            }
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    ModuleSummaries.RESOURCE);
+            try (OutputStream out = new BufferedOutputStream(file.openOutputStream())) {
+                ModuleSummaries.write(out, graph, exported, personalDataTypes, transfers);
+            }
+        } catch (IOException e) {
+            messager.printMessage(Kind.ERROR, "Failed to write method summaries: " + e.toString());
+        }
+        if (report != null) {
+            report.set("export.methods", exported.cardinality());
+        }
     }
 
-    private static boolean hasEntityAnnotation(Element field) {
-        return field != null && field.getAnnotation(Document.class) != null;
+    private void resolveDeferredScans(BitSet reachable) {
+        Map<Element, Boolean> entities = new HashMap<>();
+        int resolvedScans = 0;
+        Iterator<MethodScan> scans = deferredScans.values().iterator();
+        while (scans.hasNext()) {
+            MethodScan scan = scans.next();
+            if (reachable != null && !reachable.get(scan.method)) {
+                continue;
+            }
+            scans.remove();
+            resolvedScans++;
+            try {
+                for (Map.Entry<Element, TypeMirror> mention : scan.mentions.entrySet()) {
+                    Boolean entity = entities.get(mention.getKey());
+                    if (entity == null) {
+                        entity = isPersonalDataEntity(mention.getKey());
+                        entities.put(mention.getKey(), entity);
+                    }
+                    if (entity) {
+                        scan.personalData.set(personalDataTypes.number(mention.getValue().toString()));
+                    }
+                }
+                for (Element method : scan.invocations) {
+                    if (isTransfer(method)) {
+                        scan.dataRecipients.set(transfers.number(new Transfer(method.getAnnotation(PersonalDataTransfer.class))));
+                    }
+                }
+            } catch (Exception e) {
+                messager.printMessage(Kind.WARNING, "Error: " + e.getStackTrace()[0].getLineNumber());
+                scan.fail();
+            }
+            scan.mentions = null;
+            scan.invocations = null;
+            graph.unpin(scan.method);
+        }
+        if (report != null) {
+            report.count("demand.resolved", resolvedScans);
+            report.set("demand.skipped", deferredScans.size());
+        }
     }
 
-
-    private static boolean isApplicationEntryPoint(Element field) {
-        return field != null && field.getAnnotation(RequestMapping.class) != null;
+    private String controllerName(TaskEvent task) {
+        String origFile = task.getCompilationUnit().getSourceFile().getName().replace('\\', '/');
+        String[] parts = origFile.split("/");
+        String file = parts[parts.length - 1];
+        file = file.replaceFirst(".java", "");
+        String p = task.getCompilationUnit().getPackageName().toString();
+        return p + "." + file;
     }
 
-    @Override
-    public void finished(TaskEvent task) {
-        this.taskEvt = task;
-        if (taskEvt.getKind() == TaskEvent.Kind.ANALYZE) {
-            if (taskEvt.getSourceFile().getName().endsWith("Test.java")) {
-                return;
+    private void replayIndex() {
+        indexReplayed = true;
+        Set<String> compiled = tracker.getSourceFiles();
+        for (UnitSummary unit : index.units()) {
+            if (compiled.contains(unit.source)) {
+                continue;
             }
-
-            Set<String> topLevel = new HashSet<>();
-            Set<String> currentRoundResolved = new HashSet<>();
-            Set<Type> interfaces = new HashSet<>();
-            taskEvt.getCompilationUnit().accept(new TreeScanner<Void, Void>() {
-
-                @Override
-                public Void visitMethod(MethodTree methodTree, Void aVoid) {
-                    final Symbol.MethodSymbol methodEle = (Symbol.MethodSymbol) treeToElement(methodTree);
-
-                    Symbol.ClassSymbol owner = ((Symbol.ClassSymbol) methodEle.owner);
-                    interfaces.addAll(owner.getInterfaces());
-
-                    String name = getMethodName(methodEle);
-                    if (isApplicationEntryPoint(methodEle)) {
-                        topLevel.add(name);
-                    }
-                    parseDeps(methodEle, methodTree, currentRoundResolved, interfaces);
-                    return super.visitMethod(methodTree, aVoid);
+            if (!sourceExists(unit.source)) {
+                index.remove(unit.source);
+                for (MethodSummary method : unit.methods) {
+                    changedMethods.set(method.method);
                 }
-            }, null);
-
-            String origFile = task.getCompilationUnit().getSourceFile().getName().replace('\\', '/');
-            String[] parts = origFile.split("/");
-            String file = parts[parts.length - 1];
-            file = file.replaceFirst(".java", "");
-            String p = task.getCompilationUnit().getPackageName().toString();
-            String name =  p + "." + file;
-
-            if (!topLevel.isEmpty()) {
-                handleResults(name, topLevel, false);
+            } else if (isCurrent(unit)) {
+                replay(unit);
+            } else {
+                resummarize(unit);
             }
+        }
+    }
 
-            Set<WaitList> toResolve = new HashSet<>();
-            Set<WaitList> toRemove = new HashSet<>();
+    private boolean isCurrent(UnitSummary unit) {
+        return Arrays.equals(unit.referenceHash, fingerprints.digest(unit.referencedTypes));
+    }
 
-            for (String s : currentRoundResolved) {
-                for (WaitList wl : waitLists) {
-                    if (wl.waitingFor.contains(s)) {
-                        wl.waitingFor.remove(s);
-                        toResolve.add(wl);
-                        if (wl.waitingFor.isEmpty()) {
-                            toRemove.add(wl);
-                        }
-                    }
-                }
+    private void resummarize(UnitSummary unit) {
+        Set<String> owners = new HashSet<>();
+        owners.add(unit.controller);
+        for (MethodSummary method : unit.methods) {
+            String name = methods.name(method.method);
+            owners.add(name.substring(0, name.indexOf('#')));
+            changedMethods.set(method.method);
+        }
+        for (String owner : owners) {
+            Element type = processingEnv.getElementUtils().getTypeElement(owner);
+            while (type != null && type.getEnclosingElement() instanceof TypeElement) {
+                type = type.getEnclosingElement();
             }
-
-            for (WaitList wl : toRemove) {
-                waitLists.remove(wl);
+            if (type instanceof Symbol.ClassSymbol && !compiledTypes.contains(type)) {
+                compiledTypes.add((Symbol.ClassSymbol) type);
             }
+        }
+    }
+
+    private UnitSummary reuseIndexedUnit(TaskEvent task, String source) {
+        UnitSummary indexed = index.remove(source);
+        if (indexed == null) {
+            return null;
+        }
+        if (Arrays.equals(indexed.hash, hash(task)) && isCurrent(indexed)) {
+            replay(indexed);
+            analyzedUnits.put(source, indexed);
+            return indexed;
+        }
+        for (MethodSummary method : indexed.methods) {
+            changedMethods.set(method.method);
+        }
+        return null;
+    }
 
-            for (WaitList wl : toResolve) {
-                handleResults(wl.name, wl.entryPoints, true);
+    private void replay(UnitSummary unit) {
+        for (MethodSummary method : unit.methods) {
+            if (!graph.contains(method.method)) {
+                graph.add(method);
             }
+        }
+        replayedUnits.add(unit);
+    }
 
+    private static boolean sourceExists(String source) {
+        try {
+            return Files.exists(Paths.get(URI.create(source)));
+        } catch (RuntimeException e) {
+            return false;
         }
     }
 
-    private void parseDeps(Symbol.MethodSymbol methodEle, Tree methodTree, Set<String> currentRound, Set<Type> interfaces) {
-        String name = getMethodName(methodEle);
-        if (!methodDependencies.containsKey(name) && !methodEle.getModifiers().contains(Modifier.ABSTRACT)) {
-            final Set<String> deps = new HashSet<>();
-            final Set<Transfer> dr = new HashSet<>();
-            final Set<String> pd = new HashSet<>();
-            methodDependencies.put(name, deps);
-            if (!interfaces.isEmpty()) {
-                for (Type t : interfaces) {
-                    String iname = getMethodName(methodEle, t);
-                    if (!interfaceImplementations.containsKey(iname)) {
-                        interfaceImplementations.put(iname, new ArrayList<>());
-                    }
-                    interfaceImplementations.get(iname).add(deps);
-                    currentRound.add(iname);
-                }
-            }
+    private static byte[] hash(TaskEvent task) {
+        try {
+            return MethodSummaryIndex.hash(task.getSourceFile().getCharContent(true));
+        } catch (IOException e) {
+            return null;
+        }
+    }
 
-            methodTree.accept(new TreeScanner<Void, Void>() {
-                @Override
-                public Void visitMethodInvocation(MethodInvocationTree inv, Void aVoid) {
-                    Symbol.MethodSymbol method = (Symbol.MethodSymbol) treeToElement(inv.getMethodSelect());
-                    deps.add(getMethodName(method));
-                    return super.visitMethodInvocation(inv, aVoid);
-                }
-            }, null);
-            try {
-                methodTree.accept(new PersonalDataScanner(pd, dr), null);
-                methodPersonalData.put(name, pd);
-                methodDataRecipients.put(name, dr);
-                if (!interfaces.isEmpty()) {
-                    for (Type t : interfaces) {
-                        String iname = getMethodName(methodEle, t);
-                        if (!methodPersonalData.containsKey(iname)) {
-                            methodPersonalData.put(iname, new HashSet<>());
-                        }
-                        methodPersonalData.get(iname).addAll(pd);
+    private boolean isInScope(Symbol.MethodSymbol methodEle) {
+        if (!scope.hasPackages()) {
+            return true;
+        }
+        Boolean result = ownersInScope.get(methodEle.owner);
+        if (result == null) {
+            result = scope.inPackages(methodEle.owner.getQualifiedName().toString());
+            ownersInScope.put(methodEle.owner, result);
+        }
+        return result;
+    }
 
-                        if (!methodDataRecipients.containsKey(iname)) {
-                            methodDataRecipients.put(iname, new HashSet<>());
-                        }
-                        methodDataRecipients.get(iname).addAll(dr);
-                    }
-                }
-            } catch (Exception e) {
-                messager.printMessage(Kind.WARNING, "Error: " + e.getStackTrace()[0].getLineNumber());
+    private int methodId(Symbol.MethodSymbol methodEle) {
+        Integer id = methodIds.get(methodEle);
+        if (id == null) {
+            id = methods.intern(getMethodName(methodEle, methodEle.owner.getQualifiedName()));
+            methodIds.put(methodEle, id);
+        }
+        return id;
+    }
+
+    private static String getMethodName(Symbol.MethodSymbol methodEle, CharSequence owner) {
+        StringBuilder name = new StringBuilder(64);
+        name.append(owner).append('#').append(methodEle.getQualifiedName()).append('(');
+        List<Symbol.VarSymbol> params = methodEle.getParameters();
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                name.append(", ");
             }
-            currentRound.add(name);
-        }
-    }
-
-    private String getMethodName(Symbol.MethodSymbol methodEle) {
-        String c = methodEle.owner.getQualifiedName().toString();
-        String m = methodEle.getQualifiedName().toString();
-        String p = "";
-        for (int i = 0; i < methodEle.getParameters().size(); i++) {
-            p += methodEle.getParameters().get(i).type;
-            if (i < methodEle.getParameters().size() - 1) {
-                p += ", ";
-            }
-        }
-        return c + '#' + m + "(" + p + ")";
-    }
-
-    private String getMethodName(Symbol.MethodSymbol methodEle, Type in) {
-        String c = in.tsym.getQualifiedName().toString();
-        String m = methodEle.getQualifiedName().toString();
-        String p = "";
-        for (int i = 0; i < methodEle.getParameters().size(); i++) {
-            p += methodEle.getParameters().get(i).type;
-            if (i < methodEle.getParameters().size() - 1) {
-                p += ", ";
-            }
-        }
-        return c + '#' + m + "(" + p + ")";
-    }
-
-    private void handleResults(String name, Set<String> entrypoints, boolean retry) {
-        Set<String> waitingFor = new HashSet<>();
-
-        Set<String> controllerPersonalData = new HashSet<>();
-        Set<Transfer> controllerDataRecipients = new HashSet<>();
-        Path path = Paths.get("/home/pdtree/", name + ".json");
-        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-            try (PrintWriter pw = new PrintWriter(writer)) {
-                pw.println("{");
-                pw.println("    \"name\": \"" + name + "\",");
-                pw.println("    \"optOut\": false,");
-                pw.println("    \"required\": true,");
-                pw.println("    \"retention\": null,");
-                pw.println("    \"pm\": null,");
-                pw.println("    \"description\": \"\",");
-                pw.println("    \"purposes\": [");
-                int i = 0;
-                for (String entrypoint : entrypoints) {
-                    Set<String> used = new HashSet<>();
-                    Set<Transfer> recipients = new HashSet<>();
-                    Set<String> personalData = new HashSet<>();
-                    personalData.addAll(getMethodPersonalData(entrypoint));
-                    recipients.addAll(getMethodDataRecipients(entrypoint));
-                    used.add(entrypoint);
-                    Pair<Set<String>, Set<Transfer>> tree = readTree(entrypoint, used, waitingFor);
-                    personalData.addAll(tree.getKey());
-                    recipients.addAll(tree.getValue());
-
-                    pw.println("        {");
-                    pw.println("            \"name\": \"" + entrypoint + "\",");
-                    pw.println("            \"optOut\": false,");
-                    pw.println("            \"required\": true,");
-                    pw.println("            \"retention\": null,");
-                    pw.println("            \"description\": \"\",");
-                    pw.println("            \"pm\": null,");
-                    pw.println("            \"purposes\": [],");
-                    pw.println("            \"data\": " + formatArrayToJson(personalData) + ",");
-                    pw.println("            \"transfers\": " + formatTransferToJson(recipients));
-                    pw.println("        " + ((i == entrypoints.size() - 1) ? "}" : "},"));
-                    controllerPersonalData.addAll(personalData);
-                    controllerDataRecipients.addAll(recipients);
-                    i++;
-                }
-                pw.println("    ],");
-                pw.println("    \"data\": " + formatArrayToJson(controllerPersonalData) + ",");
-                pw.println("    \"transfers\": " + formatTransferToJson(controllerDataRecipients));
-                pw.println("}");
+            name.append(params.get(i).type);
+        }
+        return name.append(')').toString();
+    }
+
+    private void writePurposes(String name, Set<Integer> entrypoints) {
+        try {
+            purposes.write(name, entrypoints);
+            if (filer) {
+                output.writeTo(processingEnv.getFiler(), resourceName(outputPath(name)), originatingElements(name));
+            } else {
+                output.writeTo(outputPath(name));
             }
         } catch (IOException e) {
             messager.printMessage(Kind.ERROR, "Failed to write file: " + e.toString());
         }
-        if (!waitingFor.isEmpty()) {
-            WaitList list = null;
-            for (WaitList wl : waitLists) {
-                if (wl.name.equals(name)) {
-                    list = wl;
-                }
+    }
+
+    private void writeManifest() {
+        try (ManifestWriter manifest = openManifest()) {
+            for (Map.Entry<String, Set<Integer>> controller : new TreeMap<>(controllers).entrySet()) {
+                purposes.write(controller.getKey(), controller.getValue());
+                manifest.add(output);
             }
-            if (list != null) {
-                list.waitingFor = waitingFor;
-            } else {
-                waitLists.add(new WaitList(name, entrypoints, waitingFor));
+            if (report != null) {
+                report.set("manifest.controllers", manifest.getControllers());
+                report.set("manifest.bytes", manifest.getBytes());
             }
+        } catch (IOException e) {
+            messager.printMessage(Kind.ERROR, "Failed to write manifest: " + e.toString());
         }
     }
 
-    private Pair<Set<String>, Set<Transfer>> readTree(String key, Set<String> used, Set<String> waitingFor) {
-        Set<String> personalData = new HashSet<>();
-        Set<Transfer> dataRecipients = new HashSet<>();
+    private ManifestWriter openManifest() throws IOException {
+        if (!filer) {
+            return new ManifestWriter(manifestFile);
+        }
+        Set<Element> elements = new LinkedHashSet<>();
+        for (String controller : controllers.keySet()) {
+            Collections.addAll(elements, originatingElements(controller));
+        }
+        FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                resourceName(manifestFile), elements.toArray(new Element[0]));
+        return new ManifestWriter(file.openOutputStream());
+    }
 
-        if (interfaceImplementations.containsKey(key) && !interfaceImplementations.get(key).isEmpty()) {
-            if (interfaceImplementations.get(key).size() == 1) {
-                Set<String> impl = interfaceImplementations.get(key).get(0);
-                for (String d : impl) {
-                    personalData.addAll(getMethodPersonalData(d));
-                    dataRecipients.addAll(getMethodDataRecipients(d));
-                    if (!used.contains(d)) {
-                        used.add(d);
-                        Pair<Set<String>, Set<Transfer>> tree = readTree(d, used, waitingFor);
-                        personalData.addAll(tree.getKey());
-                        dataRecipients.addAll(tree.getValue());
-                    }
+    private Path outputPath(String name) {
+        return outputDir.resolve(name + ".json");
+    }
+
+    private static String resourceName(Path path) {
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    private Element[] originatingElements(String controller) {
+        Set<Element> elements = origins.get(controller);
+        return elements != null ? elements.toArray(new Element[0]) : new Element[0];
+    }
+
+    private void addOrigin(String controller, Element element) {
+        if (origins != null && element != null) {
+            origins.computeIfAbsent(controller, k -> new LinkedHashSet<>()).add(element);
+        }
+    }
+
+    private void replayCompiledTypes() {
+        List<ClassModel> models = new ArrayList<>();
+        List<Symbol.ClassSymbol> types = new ArrayList<>();
+        try (ClassRepository repository = new ClassRepository(engine.getClassPath(StandardLocation.CLASS_OUTPUT,
+                StandardLocation.CLASS_PATH))) {
+            repository.onLoad(this::refreshFromSource);
+            for (Symbol.ClassSymbol type : compiledTypes) {
+                if (!scope.inPackages(type.getQualifiedName().toString())) {
+                    continue;
                 }
-            } else {
-                for (Set<String> impl : interfaceImplementations.get(key)) {
-                    for (String d : impl) {
-                        personalData.addAll(getMethodPersonalData(d));
-                        dataRecipients.addAll(getMethodDataRecipients(d));
-                        if (!used.contains(d)) {
-                            used.add(d);
-                            Pair<Set<String>, Set<Transfer>> tree = readTree(d, used, waitingFor);
-                            personalData.addAll(tree.getKey());
-                            dataRecipients.addAll(tree.getValue());
-                        }
-                    }
+                for (byte[] bytes : classFiles(type)) {
+                    ClassModel model = ClassModel.read(bytes, true);
+                    repository.add(model);
+                    models.add(model);
+                    types.add(type);
                 }
             }
-        } else if (methodDependencies.containsKey(key)) {
-            for (String d : methodDependencies.get(key)) {
-                personalData.addAll(getMethodPersonalData(d));
-                dataRecipients.addAll(getMethodDataRecipients(d));
-                if (!used.contains(d)) {
-                    used.add(d);
-                    Pair<Set<String>, Set<Transfer>> tree = readTree(d, used, waitingFor);
-                    personalData.addAll(tree.getKey());
-                    dataRecipients.addAll(tree.getValue());
+            ClassSummarizer summarizer = new ClassSummarizer(repository);
+            for (int i = 0; i < models.size(); i++) {
+                for (MethodResult result : summarizer.analyze(models.get(i))) {
+                    int method = methods.intern(result.name);
+                    if (result.controller != null) {
+                        controllers.computeIfAbsent(result.controller, k -> new HashSet<>()).add(method);
+                        addOrigin(result.controller, types.get(i));
+                    }
+                    if (result.dependencies != null && !graph.contains(method)) {
+                        graph.add(result.summary(methods, personalDataTypes, transfers));
+                    }
                 }
             }
-        }  else {
-            String[] auw = taskEvt.getCompilationUnit().getPackageName().toString().split("\\.");
-            String underWork = auw.length > 4 ? String.join(".", auw[0], auw[1], auw[2], auw[3]) : "";
-            String[] ma = key.split("\\.");
-            String missing = ma.length > 4 ? String.join(".", ma[0], ma[1], ma[2], ma[3]) : "";
-            if (underWork.equals(missing)) {
-                waitingFor.add(key);
-            }
+        } catch (IOException | RuntimeException e) {
+            messager.printMessage(Kind.ERROR, "Failed to read compiled types: " + e.toString());
         }
-        return new Pair<>(personalData, dataRecipients);
-    }
-
-    private String formatArrayToJson(Set<String> data) {
-        String pd = "";
-        Iterator<String> it = data.iterator();
-        while(it.hasNext()) {
-            pd += ("\"" + it.next() + "\"");
-            if (it.hasNext()) {
-                pd += ", ";
-            }
+        if (report != null) {
+            report.set("compiledTypes", compiledTypes.size());
+            report.set("compiledTypes.classFiles", models.size());
         }
-        return "[" + pd + "]";
+        compiledTypes.clear();
     }
 
-    private String formatTransferToJson(Set<Transfer> data) {
-        String pd = "";
-        Iterator<Transfer> it = data.iterator();
-        while(it.hasNext()) {
-            Transfer t = it.next();
-            pd += ("{\"recipientId\": \"" + t.recipientId + "\", \"policyURL\": \"" + t.policyURL + "\"}");
-            if (it.hasNext()) {
-                pd += ", ";
+    private void refreshFromSource(ClassModel model) {
+        TypeElement type = processingEnv.getElementUtils().getTypeElement(model.name.replace('/', '.')
+                .replace('$', '.'));
+        if (type == null || engine.getTrees().getPath(type) == null) {
+            return;
+        }
+        model.personalData = TypeClassificationCache.hasPersonalDataAnnotation(type);
+        model.entity = TypeClassificationCache.hasEntityAnnotation(type);
+        Map<String, PersonalDataTransfer> annotations = new HashMap<>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member instanceof Symbol.MethodSymbol) {
+                Symbol.MethodSymbol method = (Symbol.MethodSymbol) member;
+                annotations.put(getMethodName(method, type.getQualifiedName()),
+                        method.getAnnotation(PersonalDataTransfer.class));
             }
         }
-        return "[" + pd + "]";
+        for (MethodModel method : model.methods) {
+            PersonalDataTransfer transfer = annotations.get(method.sourceName());
+            method.transfer = transfer != null ? new Transfer(transfer) : null;
+        }
     }
 
-    private Set<String> getMethodPersonalData(String name) {
-        if (methodPersonalData.containsKey(name)) {
-            return methodPersonalData.get(name);
+    private static List<byte[]> classFiles(Symbol.ClassSymbol type) throws IOException {
+        List<byte[]> files = new ArrayList<>();
+        JavaFileObject classfile = type.classfile;
+        if (classfile == null || classfile.getKind() != JavaFileObject.Kind.CLASS) {
+            return files;
+        }
+        try (InputStream in = classfile.openInputStream()) {
+            files.add(readFully(in));
+        }
+        if ("file".equals(classfile.toUri().getScheme())) {
+            Path path = Paths.get(classfile.toUri());
+            String nested = path.getFileName().toString().replaceFirst("\\.class$", "") + "$*.class";
+            try (DirectoryStream<Path> siblings = Files.newDirectoryStream(path.getParent(), nested)) {
+                for (Path sibling : siblings) {
+                    files.add(Files.readAllBytes(sibling));
+                }
+            }
         }
-        return new HashSet<>();
+        return files;
     }
 
-    private Set<Transfer> getMethodDataRecipients(String name) {
-        if (methodDataRecipients.containsKey(name)) {
-            return methodDataRecipients.get(name);
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            bytes.write(buffer, 0, n);
         }
-        return new HashSet<>();
+        return bytes.toByteArray();
     }
 
     private static Symbol treeToElement(Tree tree) {
@@ -453,166 +676,380 @@ public class PersonalDataMetricsProcessor extends AbstractProcessor implements T
         return TreeInfo.symbolFor((JCTree) tree);
     }
 
-    @Override
-    public void started(TaskEvent task) {
-    }
-
-
-    private class PersonalDataScanner extends TreeScanner<Void, Void> {
+    private class PurposeAnalysis implements TreeAnalysis {
 
-        private final Set<String> classes;
-        private final Set<Transfer> recipients;
+        private boolean scanning;
+        private UnitSummary unit;
+        private Set<String> references;
+        private Set<Integer> topLevel;
+        private List<MethodSummary> unitMethods;
+        private MethodScan[] scans = new MethodScan[8];
+        private int depth;
+        private final BitSet pending = new BitSet();
 
-        public PersonalDataScanner(Set<String> classes, Set<Transfer> recipients) {
-            this.classes = classes;
-            this.recipients = recipients;
-        }
+        @Override
+        public boolean startUnit(TaskEvent task) {
+            scanning = false;
+            if (task.getSourceFile().getName().endsWith("Test.java")) {
+                return false;
+            }
 
-        private void savePersonalData(Symbol ele) {
-            classes.add(ele.type.toString());
-        }
+            String source = task.getSourceFile().toUri().toString();
+            UnitSummary unit = analyzedUnits.get(source);
+            if (index != null) {
+                if (!indexReplayed) {
+                    replayIndex();
+                }
+                if (unit == null) {
+                    unit = reuseIndexedUnit(task, source);
+                    if (unit == null) {
+                        unit = new UnitSummary(source, hash(task), controllerName(task), new HashSet<>(), new ArrayList<>());
+                        analyzedUnits.put(source, unit);
+                    }
+                }
+            }
 
-        private void savePersonalData(TypeMirror type) {
-            classes.add(type.toString());
+            scanning = !replayedUnits.contains(unit);
+            if (scanning) {
+                this.unit = unit;
+                references = unit != null ? unit.referencedTypes : null;
+                topLevel = unit != null ? unit.entryPoints : new HashSet<>();
+                unitMethods = unit != null ? unit.methods : new ArrayList<>();
+                depth = 0;
+            }
+            return scanning;
         }
 
         @Override
-        public Void visitParameterizedType(ParameterizedTypeTree parameterizedTypeTree, Void aVoid) {
-            for (Tree typeArgument : parameterizedTypeTree.getTypeArguments()) {
-                Symbol argEle = treeToElement(typeArgument);
-                if (isDatabaseEntity(argEle) && isPersonalData(argEle)) {
-                    savePersonalData(argEle);
+        public void finishUnit(TaskEvent task) {
+            if (scanning && references != null) {
+                unit.referenceHash = fingerprints.digest(references);
+            }
+            if (scanning && !topLevel.isEmpty()) {
+                String name = controllerName(task);
+                controllers.computeIfAbsent(name, k -> new LinkedHashSet<>()).addAll(topLevel);
+                if (origins != null) {
+                    for (Tree type : task.getCompilationUnit().getTypeDecls()) {
+                        addOrigin(name, treeToElement(type));
+                    }
                 }
             }
-            return super.visitParameterizedType(parameterizedTypeTree, aVoid);
         }
 
         @Override
-        public Void visitNewArray(NewArrayTree newArrayTree, Void aVoid) {
-            Symbol element = treeToElement(newArrayTree.getType());
-            if (element == null) {
-                return null;
-            }
-            if (isDatabaseEntity(element) && isPersonalData(element)) {
-                savePersonalData(element);
-            }
-            return super.visitNewArray(newArrayTree, aVoid);
+        public void compilationFinished() {
+            PersonalDataMetricsProcessor.this.compilationFinished();
         }
 
         @Override
-        public Void visitNewClass(NewClassTree newClassTree, Void aVoid) {
-            Symbol element = treeToElement(newClassTree);
-            if (element == null) {
-                return null;
+        public void enter(Tree tree, int at) {
+            if (tree instanceof MethodTree) {
+                enterMethod((MethodTree) tree);
+                return;
             }
-            Symbol ide = treeToElement(newClassTree.getIdentifier());
-            if (isDatabaseEntity(ide) && isPersonalData(ide)) {
-                savePersonalData(ide);
+            if (depth == 0) {
+                return;
             }
-            return super.visitNewClass(newClassTree, aVoid);
-        }
-
-        @Override
-        public Void visitIdentifier(IdentifierTree identifierTree, Void aVoid) {
-            Symbol ele = treeToElement(identifierTree);
-            TreePath path = Trees.instance(processingEnv).getPath(ele);
-            if (path == null) {
-                return null;
+            if (tree instanceof MethodInvocationTree) {
+                Symbol.MethodSymbol method = (Symbol.MethodSymbol) treeToElement(((MethodInvocationTree) tree).getMethodSelect());
+                if (method != null && isInScope(method)) {
+                    int dependency = methodId(method);
+                    for (int i = 0; i < depth; i++) {
+                        if (scans[i] != null) {
+                            scans[i].addDependency(dependency);
+                        }
+                    }
+                }
             }
-            TypeMirror tp = Trees.instance(processingEnv).getTypeMirror(path);
-            if (tp != null) {
-                switch (tp.getKind()) {
-                    case ARRAY: {
-                        ArrayType at = (ArrayType) tp;
-                        Element array = processingEnv.getTypeUtils().asElement(at.getComponentType());
-                        if (isDatabaseEntity(array) && isPersonalData(array)) {
-                            savePersonalData(at.getComponentType());
+            if (!collecting()) {
+                return;
+            }
+            try {
+                switch (tree.getKind()) {
+                    case PARAMETERIZED_TYPE:
+                        for (Tree typeArgument : ((ParameterizedTypeTree) tree).getTypeArguments()) {
+                            for (TypeMirror type : typeMentions.all(((JCTree) typeArgument).type)) {
+                                Element argEle = processingEnv.getTypeUtils().asElement(type);
+                                if (deferredScans != null) {
+                                    mention(argEle, type);
+                                } else if (isEntity(argEle)) {
+                                    savePersonalData(type);
+                                }
+                            }
+                        }
+                        break;
+                    case NEW_ARRAY: {
+                        Symbol element = treeToElement(((NewArrayTree) tree).getType());
+                        if (element == null) {
+                            prune(at);
+                        } else if (deferredScans != null) {
+                            mention(element);
+                        } else if (isEntity(element)) {
+                            savePersonalData(element.type);
                         }
                         break;
                     }
-                    case DECLARED: {
-                        DeclaredType dt = (DeclaredType) tp;
-                        for (TypeMirror mirror : dt.getTypeArguments()) {
-                            Element argumentType = processingEnv.getTypeUtils().asElement(mirror);
-                            if (isDatabaseEntity(argumentType) && isPersonalData(argumentType)) {
-                                savePersonalData(argumentType.asType());
+                    case NEW_CLASS: {
+                        if (treeToElement(tree) == null) {
+                            prune(at);
+                            break;
+                        }
+                        Symbol ide = treeToElement(((NewClassTree) tree).getIdentifier());
+                        if (deferredScans != null) {
+                            mention(ide);
+                        } else if (isEntity(ide)) {
+                            savePersonalData(ide.type);
+                        }
+                        break;
+                    }
+                    case IDENTIFIER:
+                        reference(treeToElement(tree));
+                        if (deferredScans != null) {
+                            for (TypeMirror type : declaredTypes.personalDataMentions(treeToElement(tree), e -> true)) {
+                                mention(processingEnv.getTypeUtils().asElement(type), type);
                             }
+                            break;
+                        }
+                        for (TypeMirror type : declaredTypes.personalDataMentions(treeToElement(tree),
+                                this::isEntity)) {
+                            savePersonalData(type);
+                        }
+                        break;
+                    case MEMBER_SELECT: {
+                        if (treeToElement(tree) == null) {
+                            prune(at);
+                            break;
                         }
+                        Symbol ide = treeToElement(((MemberSelectTree) tree).getExpression());
+                        if (deferredScans != null) {
+                            mention(ide);
+                        } else if (isEntity(ide)) {
+                            savePersonalData(ide.type);
+                        }
+                        break;
+                    }
+                    case METHOD_INVOCATION: {
+                        Symbol method = treeToElement(((MethodInvocationTree) tree).getMethodSelect());
+                        reference(method);
+                        if (deferredScans != null) {
+                            if (method != null) {
+                                for (int i = 0; i < depth; i++) {
+                                    if (scans[i] != null && scans[i].collecting()) {
+                                        scans[i].invocations.add(method);
+                                    }
+                                }
+                            }
+                        } else if (isTransfer(method)) {
+                            int transfer = transfers.number(new Transfer(method.getAnnotation(PersonalDataTransfer.class)));
+                            for (int i = 0; i < depth; i++) {
+                                if (scans[i] != null && scans[i].collecting()) {
+                                    scans[i].dataRecipients.set(transfer);
+                                }
+                            }
+                        }
+                        break;
                     }
                     default:
                         break;
                 }
+            } catch (Exception e) {
+                for (int i = 0; i < depth; i++) {
+                    if (scans[i] != null && scans[i].collecting()) {
+                        messager.printMessage(Kind.WARNING, "Error: " + e.getStackTrace()[0].getLineNumber());
+                        scans[i].fail();
+                    }
+                }
             }
-            return super.visitIdentifier(identifierTree, aVoid);
         }
 
         @Override
-        public Void visitMemberSelect(MemberSelectTree memberSelectTree, Void aVoid) {
-            Element element = treeToElement(memberSelectTree);
-            if (element == null) {
-                return null;
+        public void exit(Tree tree, int at) {
+            for (int i = 0; i < depth; i++) {
+                if (scans[i] != null && scans[i].prunedAt == at) {
+                    scans[i].prunedAt = 0;
+                }
             }
-            Symbol ide = treeToElement(memberSelectTree.getExpression());
-            if (isDatabaseEntity(ide) && isPersonalData(ide)) {
-                savePersonalData(ide);
+            if (tree instanceof MethodTree) {
+                MethodScan scan = scans[--depth];
+                scans[depth] = null;
+                if (scan != null) {
+                    pending.clear(scan.method);
+                    if (scan.mentions != null && (!scan.mentions.isEmpty() || !scan.invocations.isEmpty())) {
+                        deferredScans.put(scan.method, scan);
+                        graph.pin(scan.method);
+                    } else {
+                        scan.mentions = null;
+                        scan.invocations = null;
+                    }
+                    MethodSummary summary = scan.summary();
+                    graph.add(summary);
+                    unitMethods.add(summary);
+                    if (index != null) {
+                        changedMethods.set(summary.method);
+                    }
+                }
             }
-            return super.visitMemberSelect(memberSelectTree, aVoid);
         }
 
         @Override
-        public Void visitMethodInvocation(MethodInvocationTree inv, Void aVoid) {
-            Symbol.MethodSymbol method = (Symbol.MethodSymbol) treeToElement(inv.getMethodSelect());
-            if (isTransfer(method)) {
-                recipients.add(new Transfer(method.getAnnotation(PersonalDataTransfer.class)));
+        public void enterArgument(MethodInvocationTree invocation, ExpressionTree argument, int index) {
+        }
+
+        @Override
+        public void exitArgument(MethodInvocationTree invocation, ExpressionTree argument, int index) {
+        }
+
+        private void enterMethod(MethodTree methodTree) {
+            final Symbol.MethodSymbol methodEle = (Symbol.MethodSymbol) treeToElement(methodTree);
+
+            if (isApplicationEntryPoint(methodEle)) {
+                topLevel.add(methodId(methodEle));
             }
-            return super.visitMethodInvocation(inv, aVoid);
+            if (depth == scans.length) {
+                scans = Arrays.copyOf(scans, depth * 2);
+            }
+            scans[depth++] = startMethod(methodEle);
         }
-    }
 
-    private class WaitList {
+        private MethodScan startMethod(Symbol.MethodSymbol methodEle) {
+            reference(methodEle);
+            int method = methodId(methodEle);
+            if (graph.contains(method) || pending.get(method) || methodEle.getModifiers().contains(Modifier.ABSTRACT)) {
+                return null;
+            }
+            List<ExecutableElement> overridden = hierarchy.overriddenMethods(methodEle);
+            int[] interfaceMethods = new int[overridden.size()];
+            for (int i = 0; i < interfaceMethods.length; i++) {
+                interfaceMethods[i] = methodId((Symbol.MethodSymbol) overridden.get(i));
+            }
+            pending.set(method);
+            return new MethodScan(method, interfaceMethods, deferredScans != null);
+        }
 
-        public Set<String> waitingFor;
+        private boolean collecting() {
+            for (int i = 0; i < depth; i++) {
+                if (scans[i] != null && scans[i].collecting()) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-        public Set<String> entryPoints;
+        private void prune(int at) {
+            for (int i = 0; i < depth; i++) {
+                if (scans[i] != null && scans[i].collecting()) {
+                    scans[i].prunedAt = at;
+                }
+            }
+        }
 
-        public final String name;
+        private void mention(Symbol element) {
+            if (element != null) {
+                mention(element, element.type);
+            }
+        }
 
-        public WaitList(String name, Set<String> entryPoints, Set<String> waitingFor) {
-            this.name = name;
-            this.entryPoints = entryPoints;
-            this.waitingFor = waitingFor;
+        private void mention(Element element, TypeMirror type) {
+            if (element == null) {
+                return;
+            }
+            reference(element);
+            for (int i = 0; i < depth; i++) {
+                if (scans[i] != null && scans[i].collecting()) {
+                    scans[i].mentions.putIfAbsent(element, type);
+                }
+            }
         }
-    }
 
-    private static boolean isTransfer(Element field){
-        return field != null && field.getAnnotation(PersonalDataTransfer.class) != null;
+        private boolean isEntity(Element element) {
+            reference(element);
+            return isPersonalDataEntity(element);
+        }
+
+        private void reference(Element element) {
+            if (references == null || element == null) {
+                return;
+            }
+            if (element instanceof TypeElement) {
+                reference((TypeElement) element);
+                return;
+            }
+            if (element.getEnclosingElement() instanceof TypeElement) {
+                reference((TypeElement) element.getEnclosingElement());
+            }
+            Element type = processingEnv.getTypeUtils().asElement(element.asType());
+            if (type instanceof TypeElement) {
+                reference((TypeElement) type);
+            }
+        }
+
+        private void reference(TypeElement type) {
+            String name = type.getQualifiedName().toString();
+            if (!name.isEmpty()) {
+                references.add(name);
+            }
+        }
+
+        private void savePersonalData(TypeMirror type) {
+            int number = personalDataTypes.number(type.toString());
+            for (int i = 0; i < depth; i++) {
+                if (scans[i] != null && scans[i].collecting()) {
+                    scans[i].personalData.set(number);
+                }
+            }
+        }
     }
 
-    private class Transfer {
+    private static final class MethodScan {
+
+        final int method;
+        final int[] interfaceMethods;
+        final BitSet personalData = new BitSet();
+        final BitSet dataRecipients = new BitSet();
+        Map<Element, TypeMirror> mentions;
+        List<Element> invocations;
+        private int[] dependencies = new int[16];
+        private int count;
+        int prunedAt;
+        private boolean failed;
+
+        MethodScan(int method, int[] interfaceMethods, boolean deferred) {
+            this.method = method;
+            this.interfaceMethods = interfaceMethods;
+            if (deferred) {
+                mentions = new LinkedHashMap<>();
+                invocations = new ArrayList<>();
+            }
+        }
 
-        public final String policyURL;
-        public final String recipientId;
+        boolean collecting() {
+            return prunedAt == 0 && !failed;
+        }
 
-        public Transfer(PersonalDataTransfer td) {
-            this.policyURL = td.policyURL();
-            this.recipientId = td.dataRecipientId();
+        void addDependency(int dependency) {
+            if (count == dependencies.length) {
+                dependencies = Arrays.copyOf(dependencies, count * 2);
+            }
+            dependencies[count++] = dependency;
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof Transfer)) {
-                return false;
+        void fail() {
+            failed = true;
+            personalData.clear();
+            dataRecipients.clear();
+            if (mentions != null) {
+                mentions.clear();
+                invocations.clear();
             }
-            Transfer o = (Transfer)obj;
-            return recipientId.equals(o.recipientId) && policyURL.equals(o.policyURL);
         }
 
-        @Override
-        public int hashCode() {
-            int result = 17;
-            result = 31 * result + recipientId.hashCode();
-            result = 31 * result + policyURL.hashCode();
-            return result;
+        MethodSummary summary() {
+            return new MethodSummary(method, interfaceMethods, IntArrays.sortedUnique(dependencies, count),
+                    personalData, dataRecipients);
         }
     }
-}
\ No newline at end of file
+
+    private static boolean isTransfer(Element field){
+        return field != null && field.getAnnotation(PersonalDataTransfer.class) != null;
+    }
+}
@@ -0,0 +1,223 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public final class PurposeManifest implements Iterator<PurposeManifest.Controller>, Closeable {
+
+    private final JsonReader json;
+
+    private PurposeManifest(JsonReader json) {
+        this.json = json;
+    }
+
+    public static PurposeManifest open(Path file) throws IOException {
+        return new PurposeManifest(new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return json.hasNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Controller next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return readController();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    private Controller readController() throws IOException {
+        String name = null;
+        List<Purpose> purposes = Collections.emptyList();
+        List<String> data = Collections.emptyList();
+        List<Recipient> transfers = Collections.emptyList();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "purposes":
+                    purposes = new ArrayList<>();
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        purposes.add(readPurpose());
+                    }
+                    json.endArray();
+                    break;
+                case "data":
+                    data = readStrings();
+                    break;
+                case "transfers":
+                    transfers = readTransfers();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return new Controller(name, purposes, data, transfers);
+    }
+
+    private Purpose readPurpose() throws IOException {
+        String name = null;
+        List<String> data = Collections.emptyList();
+        List<Recipient> transfers = Collections.emptyList();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "data":
+                    data = readStrings();
+                    break;
+                case "transfers":
+                    transfers = readTransfers();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return new Purpose(name, data, transfers);
+    }
+
+    private List<String> readStrings() throws IOException {
+        List<String> values = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            values.add(json.nextString());
+        }
+        json.endArray();
+        return values;
+    }
+
+    private List<Recipient> readTransfers() throws IOException {
+        List<Recipient> recipients = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            String recipientId = null;
+            String policyURL = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "recipientId":
+                        recipientId = json.nextString();
+                        break;
+                    case "policyURL":
+                        policyURL = json.nextString();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+            recipients.add(new Recipient(recipientId, policyURL));
+        }
+        json.endArray();
+        return recipients;
+    }
+
+    public static final class Controller {
+
+        private final String name;
+        private final List<Purpose> purposes;
+        private final List<String> data;
+        private final List<Recipient> transfers;
+
+        Controller(String name, List<Purpose> purposes, List<String> data, List<Recipient> transfers) {
+            this.name = name;
+            this.purposes = purposes;
+            this.data = data;
+            this.transfers = transfers;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Purpose> getPurposes() {
+            return purposes;
+        }
+
+        public List<String> getData() {
+            return data;
+        }
+
+        public List<Recipient> getTransfers() {
+            return transfers;
+        }
+    }
+
+    public static final class Purpose {
+
+        private final String name;
+        private final List<String> data;
+        private final List<Recipient> transfers;
+
+        Purpose(String name, List<String> data, List<Recipient> transfers) {
+            this.name = name;
+            this.data = data;
+            this.transfers = transfers;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getData() {
+            return data;
+        }
+
+        public List<Recipient> getTransfers() {
+            return transfers;
+        }
+    }
+
+    public static final class Recipient {
+
+        private final String recipientId;
+        private final String policyURL;
+
+        Recipient(String recipientId, String policyURL) {
+            this.recipientId = recipientId;
+            this.policyURL = policyURL;
+        }
+
+        public String getRecipientId() {
+            return recipientId;
+        }
+
+        public String getPolicyURL() {
+            return policyURL;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+final class PurposeWriter {
+
+    private final CallGraph graph;
+    private final Numbering<String> personalDataTypes;
+    private final Numbering<Transfer> transfers;
+    private final OutputBuffer output;
+    private final String indent;
+
+    PurposeWriter(CallGraph graph, Numbering<String> personalDataTypes, Numbering<Transfer> transfers,
+                  OutputBuffer output) {
+        this(graph, personalDataTypes, transfers, output, "    ");
+    }
+
+    PurposeWriter(CallGraph graph, Numbering<String> personalDataTypes, Numbering<Transfer> transfers,
+                  OutputBuffer output, String indent) {
+        this.graph = graph;
+        this.personalDataTypes = personalDataTypes;
+        this.transfers = transfers;
+        this.output = output;
+        this.indent = indent;
+    }
+
+    void write(String name, Collection<Integer> entrypoints) throws IOException {
+        MethodTable methods = graph.getMethods();
+        BitSet controllerPersonalData = new BitSet();
+        BitSet controllerDataRecipients = new BitSet();
+        try (JsonWriter json = new JsonWriter(output.writer(), indent)) {
+            json.beginObject();
+            json.name("name").value(name);
+            json.name("optOut").value(false);
+            json.name("required").value(true);
+            json.name("retention").nullValue();
+            json.name("pm").nullValue();
+            json.name("description").value("");
+            json.name("purposes").beginArray();
+            List<Integer> sortedEntrypoints = new ArrayList<>(entrypoints);
+            sortedEntrypoints.sort(Comparator.comparing(methods::name));
+            for (int entrypoint : sortedEntrypoints) {
+                CallGraph.Summary tree = graph.closure(entrypoint);
+                Set<String> personalData = personalDataTypes.collect(tree.personalData, new TreeSet<>());
+                Set<Transfer> recipients = transfers.collect(tree.dataRecipients, new TreeSet<>());
+
+                json.beginObject();
+                json.name("name").value(methods.name(entrypoint));
+                json.name("optOut").value(false);
+                json.name("required").value(true);
+                json.name("retention").nullValue();
+                json.name("description").value("");
+                json.name("pm").nullValue();
+                json.name("purposes").beginArray().endArray();
+                json.name("data").stringArray(personalData);
+                json.name("transfers");
+                writeTransfers(json, recipients);
+                json.endObject();
+                controllerPersonalData.or(tree.personalData);
+                controllerDataRecipients.or(tree.dataRecipients);
+            }
+            json.endArray();
+            json.name("data").stringArray(personalDataTypes.collect(controllerPersonalData, new TreeSet<>()));
+            json.name("transfers");
+            writeTransfers(json, transfers.collect(controllerDataRecipients, new TreeSet<>()));
+            json.endObject();
+        }
+    }
+
+    private static void writeTransfers(JsonWriter json, Set<Transfer> data) throws IOException {
+        json.beginArray();
+        for (Transfer t : data) {
+            json.beginObject();
+            json.name("recipientId").value(t.recipientId);
+            json.name("policyURL").value(t.policyURL);
+            json.endObject();
+        }
+        json.endArray();
+    }
+}
@@ -0,0 +1,88 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+final class SarifReport {
+
+    static final String RULE_ID = "unsafe-personal-data";
+
+    private final List<Result> results = new ArrayList<>();
+
+    void add(String uri, long startLine, long startColumn, long endLine, long endColumn, String message) {
+        results.add(new Result(uri, startLine, startColumn, endLine, endColumn, message));
+    }
+
+    int size() {
+        return results.size();
+    }
+
+    void write(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(out, "  ")) {
+            json.beginObject();
+            json.name("$schema").value("https://json.schemastore.org/sarif-2.1.0.json");
+            json.name("version").value("2.1.0");
+            json.name("runs").beginArray().beginObject();
+            json.name("tool").beginObject().name("driver").beginObject();
+            json.name("name").value("personaldataflow");
+            json.name("rules").beginArray().beginObject();
+            json.name("id").value(RULE_ID);
+            json.name("shortDescription").beginObject()
+                    .name("text").value("@PersonalData used outside a @PersonalDataHandler").endObject();
+            json.name("defaultConfiguration").beginObject().name("level").value("warning").endObject();
+            json.endObject().endArray();
+            json.endObject().endObject();
+            json.name("results").beginArray();
+            for (Result result : results) {
+                json.beginObject();
+                json.name("ruleId").value(RULE_ID);
+                json.name("level").value("warning");
+                json.name("message").beginObject().name("text").value(result.message).endObject();
+                json.name("locations").beginArray().beginObject();
+                json.name("physicalLocation").beginObject();
+                json.name("artifactLocation").beginObject().name("uri").value(result.uri).endObject();
+                json.name("region").beginObject();
+                json.name("startLine").value(result.startLine);
+                json.name("startColumn").value(result.startColumn);
+                json.name("endLine").value(result.endLine);
+                json.name("endColumn").value(result.endColumn);
+                json.endObject();
+                json.endObject();
+                json.endObject().endArray();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject().endArray();
+            json.endObject();
+        }
+    }
+
+    private static final class Result {
+
+        final String uri;
+        final long startLine;
+        final long startColumn;
+        final long endLine;
+        final long endColumn;
+        final String message;
+
+        Result(String uri, long startLine, long startColumn, long endLine, long endColumn, String message) {
+            this.uri = uri;
+            this.startLine = startLine;
+            this.startColumn = startColumn;
+            this.endLine = endLine;
+            this.endColumn = endColumn;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class Signatures {
+
+    private Signatures() {
+    }
+
+    static String methodName(String owner, String name, String descriptor, String signature, boolean varargs) {
+        StringBuilder result = new StringBuilder(64);
+        result.append(sourceName(owner)).append('#').append(name).append('(');
+        List<String> params = parameterTypes(descriptor, signature, varargs);
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(params.get(i));
+        }
+        return result.append(')').toString();
+    }
+
+    static List<String> parameterTypes(String descriptor, String signature, boolean varargs) {
+        Parser parser = new Parser(signature != null ? signature : descriptor);
+        parser.skipTypeParameters();
+        parser.expect('(');
+        List<String> params = new ArrayList<>();
+        while (parser.peek() != ')') {
+            StringBuilder type = new StringBuilder();
+            parser.type(type);
+            params.add(type.toString());
+        }
+        if (varargs && !params.isEmpty()) {
+            String last = params.get(params.size() - 1);
+            if (last.endsWith("[]")) {
+                params.set(params.size() - 1, last.substring(0, last.length() - 2) + "...");
+            }
+        }
+        return params;
+    }
+
+    static List<String> classArguments(String signature, boolean nested) {
+        List<String> arguments = new ArrayList<>();
+        if (signature != null && signature.charAt(0) == 'L') {
+            new Parser(signature).classArguments(arguments, nested);
+        }
+        return arguments;
+    }
+
+    static void methodClassArguments(String methodSignature, List<String> arguments) {
+        Parser parser = new Parser(methodSignature);
+        parser.skipTypeParameters();
+        parser.expect('(');
+        while (parser.peek() != ')') {
+            parser.nestedArguments(arguments);
+        }
+        parser.expect(')');
+        parser.nestedArguments(arguments);
+    }
+
+    static String arrayElement(String descriptor) {
+        int i = 0;
+        while (i < descriptor.length() && descriptor.charAt(i) == '[') {
+            i++;
+        }
+        if (i == 0) {
+            return descriptor;
+        }
+        return descriptor.charAt(i) == 'L' ? descriptor.substring(i + 1, descriptor.length() - 1) : null;
+    }
+
+    static String sourceName(String internalName) {
+        int slash = internalName.lastIndexOf('/');
+        String pkg = slash >= 0 ? internalName.substring(0, slash + 1).replace('/', '.') : "";
+        String[] parts = internalName.substring(slash + 1).split("\\$", -1);
+        StringBuilder result = new StringBuilder(pkg).append(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            int digits = 0;
+            while (digits < part.length() && Character.isDigit(part.charAt(digits))) {
+                digits++;
+            }
+            if (digits == part.length()) {
+                return "";
+            }
+            if (digits > 0) {
+                result.setLength(0);
+                result.append(part.substring(digits));
+            } else {
+                result.append('.').append(part);
+            }
+        }
+        return result.toString();
+    }
+
+    private static final class Parser {
+
+        private final String s;
+        private int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        char peek() {
+            return s.charAt(pos);
+        }
+
+        void expect(char c) {
+            if (s.charAt(pos++) != c) {
+                throw new IllegalArgumentException("Malformed signature: " + s);
+            }
+        }
+
+        void skipTypeParameters() {
+            if (peek() != '<') {
+                return;
+            }
+            int depth = 0;
+            do {
+                char c = s.charAt(pos++);
+                if (c == '<') {
+                    depth++;
+                } else if (c == '>') {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+
+        void type(StringBuilder out) {
+            char c = s.charAt(pos++);
+            switch (c) {
+                case 'B': out.append("byte"); break;
+                case 'C': out.append("char"); break;
+                case 'D': out.append("double"); break;
+                case 'F': out.append("float"); break;
+                case 'I': out.append("int"); break;
+                case 'J': out.append("long"); break;
+                case 'S': out.append("short"); break;
+                case 'Z': out.append("boolean"); break;
+                case 'V': out.append("void"); break;
+                case '[':
+                    type(out);
+                    out.append("[]");
+                    break;
+                case 'T': {
+                    int end = s.indexOf(';', pos);
+                    out.append(s, pos, end);
+                    pos = end + 1;
+                    break;
+                }
+                case 'L':
+                    classType(out, null, false);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Malformed signature: " + s);
+            }
+        }
+
+        void classArguments(List<String> arguments, boolean nested) {
+            pos++;
+            classType(new StringBuilder(), arguments, nested);
+        }
+
+        void nestedArguments(List<String> arguments) {
+            while (peek() == '[') {
+                pos++;
+            }
+            if (peek() == 'L') {
+                classArguments(arguments, true);
+            } else {
+                type(new StringBuilder());
+            }
+        }
+
+        private void classType(StringBuilder out, List<String> arguments, boolean nested) {
+            int start = pos;
+            StringBuilder name = new StringBuilder();
+            while (true) {
+                char c = s.charAt(pos);
+                if (c == ';' || c == '<' || c == '.') {
+                    break;
+                }
+                pos++;
+            }
+            name.append(s, start, pos);
+            out.append(sourceName(name.toString()));
+            while (true) {
+                char c = s.charAt(pos++);
+                if (c == ';') {
+                    return;
+                }
+                if (c == '.') {
+                    start = pos;
+                    while (s.charAt(pos) != ';' && s.charAt(pos) != '<' && s.charAt(pos) != '.') {
+                        pos++;
+                    }
+                    out.append('.').append(s, start, pos);
+                } else if (c == '<') {
+                    out.append('<');
+                    boolean first = true;
+                    while (s.charAt(pos) != '>') {
+                        if (!first) {
+                            out.append(',');
+                        }
+                        first = false;
+                        if (arguments != null && s.charAt(pos) == 'L') {
+                            int end = pos + 1;
+                            while (s.charAt(end) != ';' && s.charAt(end) != '<' && s.charAt(end) != '.') {
+                                end++;
+                            }
+                            arguments.add(s.substring(pos + 1, end));
+                            if (nested) {
+                                pos++;
+                                classType(out, arguments, true);
+                                continue;
+                            }
+                        }
+                        typeArgument(out);
+                    }
+                    pos++;
+                    out.append('>');
+                }
+            }
+        }
+
+        private void typeArgument(StringBuilder out) {
+            char c = s.charAt(pos);
+            if (c == '*') {
+                pos++;
+                out.append('?');
+            } else if (c == '+') {
+                pos++;
+                out.append("? extends ");
+                type(out);
+            } else if (c == '-') {
+                pos++;
+                out.append("? super ");
+                type(out);
+            } else {
+                type(out);
+            }
+        }
+    }
+}
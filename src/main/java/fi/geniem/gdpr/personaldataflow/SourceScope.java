@@ -0,0 +1,113 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.source.tree.CompilationUnitTree;
+
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class SourceScope {
+
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final String[] packages;
+    private final Map<String, Boolean> units = new HashMap<>();
+
+    SourceScope(String includes, String excludes, String packages) {
+        this.includes = matchers(includes);
+        this.excludes = matchers(excludes);
+        List<String> roots = split(packages);
+        this.packages = roots.toArray(new String[0]);
+    }
+
+    boolean includes(CompilationUnitTree unit) {
+        String source = unit.getSourceFile().toUri().toString();
+        Boolean result = units.get(source);
+        if (result == null) {
+            result = matches(unit.getSourceFile().toUri().getPath())
+                    && inPackages(unit.getPackageName() != null ? unit.getPackageName().toString() : "");
+            units.put(source, result);
+        }
+        return result;
+    }
+
+    boolean hasPackages() {
+        return packages.length > 0;
+    }
+
+    boolean inPackages(String name) {
+        if (packages.length == 0) {
+            return true;
+        }
+        for (String root : packages) {
+            if (name.startsWith(root) && (name.length() == root.length() || isBoundary(name.charAt(root.length())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(String path) {
+        if (path == null) {
+            return includes.isEmpty();
+        }
+        Path file = Paths.get(path);
+        for (PathMatcher exclude : excludes) {
+            if (exclude.matches(file)) {
+                return false;
+            }
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (PathMatcher include : includes) {
+            if (include.matches(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBoundary(char c) {
+        return c == '.' || c == '#' || c == '$';
+    }
+
+    private static List<PathMatcher> matchers(String patterns) {
+        FileSystem fs = FileSystems.getDefault();
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String pattern : split(patterns)) {
+            matchers.add(fs.getPathMatcher("glob:" + pattern));
+        }
+        return matchers;
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        if (value == null) {
+            return parts;
+        }
+        int braces = 0;
+        int start = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : ',';
+            if (c == '{') {
+                braces++;
+            } else if (c == '}') {
+                braces--;
+            } else if (c == ',' && braces <= 0) {
+                String part = value.substring(start, i).trim();
+                if (!part.isEmpty()) {
+                    parts.add(part);
+                }
+                start = i + 1;
+            }
+        }
+        return parts;
+    }
+}
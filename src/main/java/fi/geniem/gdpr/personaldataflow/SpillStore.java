@@ -0,0 +1,193 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+final class SpillStore implements Closeable {
+
+    private static final long MAX_SEGMENT = 1L << 30;
+
+    private final long budget;
+    private final Path dir;
+    private final long segmentSize;
+    private final List<Path> files = new ArrayList<>();
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private int[] segmentOf = new int[1024];
+    private int[] offsetOf = new int[1024];
+    private Path current;
+    private DataOutputStream out;
+    private ByteBuffer view;
+    private long spilledMethods;
+    private long spilledBytes;
+    private long reads;
+
+    SpillStore(long budget, Path dir) {
+        this(budget, dir, MAX_SEGMENT);
+    }
+
+    SpillStore(long budget, Path dir, long segmentSize) {
+        this.budget = budget;
+        this.dir = dir;
+        this.segmentSize = Math.min(segmentSize, MAX_SEGMENT);
+    }
+
+    long getBudget() {
+        return budget;
+    }
+
+    void write(int method, int[] dependencies, BitSet personalData, BitSet dataRecipients) {
+        try {
+            if (out != null && out.size() >= segmentSize) {
+                seal();
+            }
+            if (out == null) {
+                Files.createDirectories(dir);
+                current = Files.createTempFile(dir, "personaldataflow-", ".seg");
+                current.toFile().deleteOnExit();
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(current), 1 << 16));
+            }
+            if (method >= segmentOf.length) {
+                int capacity = Math.max(method + 1, segmentOf.length * 2);
+                segmentOf = Arrays.copyOf(segmentOf, capacity);
+                offsetOf = Arrays.copyOf(offsetOf, capacity);
+            }
+            segmentOf[method] = segments.size();
+            offsetOf[method] = out.size();
+            out.writeInt(dependencies.length);
+            for (int dependency : dependencies) {
+                out.writeInt(dependency);
+            }
+            writeBits(personalData);
+            writeBits(dataRecipients);
+            spilledMethods++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void seal() throws IOException {
+        out.close();
+        spilledBytes += out.size();
+        segments.add(map(current));
+        files.add(current);
+        out = null;
+        current = null;
+        view = null;
+    }
+
+    int dependencyCount(int method) {
+        return segment(method).getInt(offsetOf[method]);
+    }
+
+    int copyDependencies(int method, int[] target, int at) {
+        ByteBuffer segment = segment(method);
+        int position = offsetOf[method];
+        int count = segment.getInt(position);
+        for (int i = 0; i < count; i++) {
+            target[at + i] = segment.getInt(position + 4 + 4 * i);
+        }
+        return count;
+    }
+
+    int[] dependencies(int method) {
+        int[] dependencies = new int[dependencyCount(method)];
+        copyDependencies(method, dependencies, 0);
+        return dependencies;
+    }
+
+    BitSet personalData(int method) {
+        ByteBuffer segment = segment(method);
+        int position = offsetOf[method];
+        position += 4 + 4 * segment.getInt(position);
+        return readBits(segment, position);
+    }
+
+    BitSet dataRecipients(int method) {
+        ByteBuffer segment = segment(method);
+        int position = offsetOf[method];
+        position += 4 + 4 * segment.getInt(position);
+        position += 4 + 8 * segment.getInt(position);
+        return readBits(segment, position);
+    }
+
+    long getSegments() {
+        return segments.size() + (out != null ? 1 : 0);
+    }
+
+    long getSpilledMethods() {
+        return spilledMethods;
+    }
+
+    long getSpilledBytes() {
+        return spilledBytes + (out != null ? out.size() : 0);
+    }
+
+    long getReads() {
+        return reads;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            files.add(current);
+            out = null;
+        }
+        segments.clear();
+        view = null;
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        files.clear();
+    }
+
+    private ByteBuffer segment(int method) {
+        reads++;
+        if (segmentOf[method] < segments.size()) {
+            return segments.get(segmentOf[method]);
+        }
+        if (view == null || offsetOf[method] >= view.limit()) {
+            try {
+                out.flush();
+                view = map(current);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return view;
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private void writeBits(BitSet bits) throws IOException {
+        long[] words = bits != null ? bits.toLongArray() : new long[0];
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readBits(ByteBuffer segment, int position) {
+        long[] words = new long[segment.getInt(position)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = segment.getLong(position + 4 + 8 * i);
+        }
+        return BitSet.valueOf(words);
+    }
+}
@@ -0,0 +1,39 @@
+package fi.geniem.gdpr.personaldataflow;
+
+final class Transfer implements Comparable<Transfer> {
+
+    public final String policyURL;
+    public final String recipientId;
+
+    public Transfer(PersonalDataTransfer td) {
+        this(td.policyURL(), td.dataRecipientId());
+    }
+
+    public Transfer(String policyURL, String recipientId) {
+        this.policyURL = policyURL;
+        this.recipientId = recipientId;
+    }
+
+    @Override
+    public int compareTo(Transfer o) {
+        int c = recipientId.compareTo(o.recipientId);
+        return c != 0 ? c : policyURL.compareTo(o.policyURL);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Transfer)) {
+            return false;
+        }
+        Transfer o = (Transfer)obj;
+        return recipientId.equals(o.recipientId) && policyURL.equals(o.policyURL);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+        result = 31 * result + recipientId.hashCode();
+        result = 31 * result + policyURL.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,23 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TaskEvent;
+
+interface TreeAnalysis {
+
+    boolean startUnit(TaskEvent task);
+
+    void enter(Tree tree, int position);
+
+    void exit(Tree tree, int position);
+
+    void enterArgument(MethodInvocationTree invocation, ExpressionTree argument, int index);
+
+    void exitArgument(MethodInvocationTree invocation, ExpressionTree argument, int index);
+
+    void finishUnit(TaskEvent task);
+
+    void compilationFinished();
+}
@@ -0,0 +1,114 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+final class TypeClassificationCache {
+
+    private static final Classification NONE = new Classification(false, false);
+
+    private final Types types;
+    private final Map<TypeElement, Classification> classifications = new HashMap<>();
+
+    private long calls;
+    private long hits;
+    private long misses;
+
+    TypeClassificationCache(Types types) {
+        this.types = types;
+    }
+
+    boolean isPersonalData(Element field) {
+        calls++;
+        return hasPersonalDataAnnotation(field) || classifyFieldType(field).personalData;
+    }
+
+    boolean isDatabaseEntity(Element field) {
+        calls++;
+        return hasEntityAnnotation(field) || classifyFieldType(field).entity;
+    }
+
+    boolean isFieldTypePersonalData(Element field) {
+        calls++;
+        return classifyFieldType(field).personalData;
+    }
+
+    boolean isFieldTypeEntity(Element field) {
+        calls++;
+        return classifyFieldType(field).entity;
+    }
+
+    long getCalls() {
+        return calls;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    int size() {
+        return classifications.size();
+    }
+
+    private Classification classifyFieldType(Element field) {
+        if (field == null) {
+            return NONE;
+        }
+        return classify(types.asElement(field.asType()));
+    }
+
+    private Classification classify(Element type) {
+        if (!(type instanceof TypeElement)) {
+            return NONE;
+        }
+
+        TypeElement typeElement = (TypeElement) type;
+        Classification c = classifications.get(typeElement);
+        if (c != null) {
+            hits++;
+            return c;
+        }
+        misses++;
+
+        Classification superClass = classify(types.asElement(typeElement.getSuperclass()));
+        c = new Classification(
+                hasPersonalDataAnnotation(typeElement) || superClass.personalData,
+                hasEntityAnnotation(typeElement) || superClass.entity);
+        classifications.put(typeElement, c);
+        return c;
+    }
+
+    static boolean hasPersonalDataAnnotation(Element field) {
+        return field != null && field.getAnnotation(PersonalData.class) != null;
+    }
+
+    static boolean hasEntityAnnotation(Element field) {
+        return field != null && field.getAnnotation(Document.class) != null;
+    }
+
+    @Override
+    public String toString() {
+        return "type classification cache: " + classifications.size() + " types, "
+                + hits + " hits, " + misses + " misses";
+    }
+
+    private static final class Classification {
+
+        final boolean personalData;
+        final boolean entity;
+
+        Classification(boolean personalData, boolean entity) {
+            this.personalData = personalData;
+            this.entity = entity;
+        }
+    }
+}
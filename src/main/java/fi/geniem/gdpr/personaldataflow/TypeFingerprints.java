@@ -0,0 +1,98 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+final class TypeFingerprints {
+
+    private static final byte[] MISSING = new byte[0];
+
+    private final Elements elements;
+    private final Types types;
+    private final Map<TypeElement, byte[]> fingerprints = new HashMap<>();
+
+    TypeFingerprints(Elements elements, Types types) {
+        this.elements = elements;
+        this.types = types;
+    }
+
+    byte[] digest(Collection<String> typeNames) {
+        MessageDigest digest = sha1();
+        for (String name : new TreeSet<>(typeNames)) {
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+            TypeElement type = elements.getTypeElement(name);
+            digest.update(type != null ? fingerprint(type) : MISSING);
+        }
+        return digest.digest();
+    }
+
+    private byte[] fingerprint(TypeElement type) {
+        byte[] fingerprint = fingerprints.get(type);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        fingerprints.put(type, MISSING);
+        StringBuilder description = new StringBuilder(256);
+        description.append(type.getQualifiedName()).append(flags(type));
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.FIELD) {
+                description.append("\nfield ").append(member.getSimpleName()).append(' ').append(member.asType())
+                        .append(flags(member));
+            } else if (member.getKind() == ElementKind.METHOD) {
+                PersonalDataTransfer transfer = member.getAnnotation(PersonalDataTransfer.class);
+                if (transfer != null) {
+                    description.append("\ntransfer ").append(member.getSimpleName())
+                            .append(types.erasure(member.asType())).append(' ')
+                            .append(transfer.dataRecipientId()).append(' ').append(transfer.policyURL());
+                } else if (!member.getModifiers().contains(Modifier.STATIC)
+                        && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                    description.append("\nmethod ").append(member.getSimpleName())
+                            .append(types.erasure(member.asType()));
+                }
+            }
+        }
+        MessageDigest digest = sha1();
+        digest.update(description.toString().getBytes(StandardCharsets.UTF_8));
+        for (TypeMirror supertype : types.directSupertypes(type.asType())) {
+            if (supertype.getKind() == TypeKind.DECLARED) {
+                digest.update(fingerprint((TypeElement) ((DeclaredType) supertype).asElement()));
+            }
+        }
+        fingerprint = digest.digest();
+        fingerprints.put(type, fingerprint);
+        return fingerprint;
+    }
+
+    private static String flags(Element element) {
+        String flags = "";
+        if (TypeClassificationCache.hasPersonalDataAnnotation(element)) {
+            flags += " @PersonalData";
+        }
+        if (TypeClassificationCache.hasEntityAnnotation(element)) {
+            flags += " @Document";
+        }
+        return flags;
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class TypeMentions {
+
+    private static final TypeMirror[] NONE = new TypeMirror[0];
+
+    private final Map<String, TypeMirror[]> declared = new HashMap<>();
+    private final Map<Element, TypeMirror[]> variables = new HashMap<>();
+    private final Set<Element> visiting = new HashSet<>();
+    private boolean variable;
+    private boolean cut;
+
+    private long walks;
+    private long hits;
+
+    List<TypeMirror> arguments(TypeMirror type) {
+        if (type == null) {
+            return Collections.emptyList();
+        }
+        switch (type.getKind()) {
+            case DECLARED: {
+                List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+                if (arguments.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                Set<TypeMirror> result = new LinkedHashSet<>();
+                for (TypeMirror argument : arguments) {
+                    Collections.addAll(result, walk(argument));
+                }
+                return new ArrayList<>(result);
+            }
+            case ARRAY:
+            case WILDCARD:
+            case TYPEVAR:
+            case INTERSECTION:
+                return Arrays.asList(walk(type));
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    List<TypeMirror> all(TypeMirror type) {
+        return type != null ? Arrays.asList(walk(type)) : Collections.emptyList();
+    }
+
+    long getWalks() {
+        return walks;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    int size() {
+        return declared.size() + variables.size();
+    }
+
+    private TypeMirror[] walk(TypeMirror type) {
+        if (type == null) {
+            return NONE;
+        }
+        switch (type.getKind()) {
+            case DECLARED:
+                return walkDeclared((DeclaredType) type);
+            case ARRAY:
+                return walk(((ArrayType) type).getComponentType());
+            case WILDCARD: {
+                WildcardType wildcard = (WildcardType) type;
+                return union(walk(wildcard.getExtendsBound()), walk(wildcard.getSuperBound()));
+            }
+            case TYPEVAR:
+                return walkVariable((TypeVariable) type);
+            case INTERSECTION: {
+                TypeMirror[] result = NONE;
+                for (TypeMirror bound : ((IntersectionType) type).getBounds()) {
+                    result = union(result, walk(bound));
+                }
+                return result;
+            }
+            default:
+                return NONE;
+        }
+    }
+
+    private TypeMirror[] walkDeclared(DeclaredType type) {
+        TypeElement element = (TypeElement) type.asElement();
+        List<? extends TypeMirror> arguments = type.getTypeArguments();
+        if (arguments.isEmpty()) {
+            return new TypeMirror[]{element.asType()};
+        }
+        String key = type.toString();
+        TypeMirror[] result = declared.get(key);
+        if (result != null) {
+            hits++;
+            return result;
+        }
+        walks++;
+        boolean outer = variable;
+        variable = false;
+        Set<TypeMirror> mentions = new LinkedHashSet<>();
+        mentions.add(element.asType());
+        for (TypeMirror argument : arguments) {
+            Collections.addAll(mentions, walk(argument));
+        }
+        result = mentions.toArray(NONE);
+        if (!variable) {
+            declared.put(key, result);
+        }
+        variable |= outer;
+        return result;
+    }
+
+    private TypeMirror[] walkVariable(TypeVariable type) {
+        variable = true;
+        Element element = type.asElement();
+        TypeMirror[] result = variables.get(element);
+        if (result != null) {
+            hits++;
+            return result;
+        }
+        if (!visiting.add(element)) {
+            cut = true;
+            return NONE;
+        }
+        walks++;
+        result = union(walk(type.getUpperBound()), walk(type.getLowerBound()));
+        visiting.remove(element);
+        if (visiting.isEmpty()) {
+            cut = false;
+        }
+        if (!cut) {
+            variables.put(element, result);
+        }
+        return result;
+    }
+
+    private static TypeMirror[] union(TypeMirror[] a, TypeMirror[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        if (a.length == 0) {
+            return b;
+        }
+        Set<TypeMirror> result = new LinkedHashSet<>(Arrays.asList(a));
+        Collections.addAll(result, b);
+        return result.toArray(NONE);
+    }
+
+    @Override
+    public String toString() {
+        return "type mentions: " + size() + " types, " + walks + " walks, " + hits + " hits";
+    }
+}
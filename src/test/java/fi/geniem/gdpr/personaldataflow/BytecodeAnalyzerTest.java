@@ -0,0 +1,43 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BytecodeAnalyzerTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void purposesMatchProcessor() throws IOException {
+        Path classes = temp.newFolder().toPath();
+        Path processed = temp.newFolder().toPath();
+        Path analyzed = temp.newFolder().toPath();
+        Fixtures.compile(new PersonalDataMetricsProcessor(), classes, Fixtures.sources(Fixtures.path("shop")), "-g",
+                "-Apersonaldataflow.outputDir=" + processed);
+
+        new BytecodeAnalyzer(analyzed, classpath(), 2).analyze(Collections.singletonList(classes));
+
+        assertEquals(Fixtures.files(processed), Fixtures.files(analyzed));
+    }
+
+    private static URL[] classpath() throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(Paths.get(entry).toUri().toURL());
+        }
+        return urls.toArray(new URL[0]);
+    }
+}
@@ -0,0 +1,227 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CallGraphTest {
+
+    private final MethodTable methods = new MethodTable();
+
+    @Test
+    public void chainCollectsDataOfAllCallees() {
+        CallGraph graph = new CallGraph(methods);
+        define(graph, "a", bits(), bits(), "b");
+        define(graph, "b", bits(1), bits(), "c");
+        define(graph, "c", bits(2), bits(7));
+
+        assertEquals(bits(1, 2), graph.closure(id("a")).personalData);
+        assertEquals(bits(7), graph.closure(id("a")).dataRecipients);
+        assertEquals(bits(2), graph.closure(id("c")).personalData);
+    }
+
+    @Test
+    public void cycleSharesOneSummary() {
+        CallGraph graph = new CallGraph(methods);
+        define(graph, "a", bits(), bits(), "b");
+        define(graph, "b", bits(1), bits(), "c");
+        define(graph, "c", bits(), bits(3), "a");
+        define(graph, "d", bits(4), bits(), "a");
+
+        for (String name : new String[]{"a", "b", "c"}) {
+            assertEquals(name, bits(1), graph.closure(id(name)).personalData);
+            assertEquals(name, bits(3), graph.closure(id(name)).dataRecipients);
+        }
+        assertEquals(bits(1, 4), graph.closure(id("d")).personalData);
+    }
+
+    @Test
+    public void selfLoop() {
+        CallGraph graph = new CallGraph(methods);
+        define(graph, "a", bits(5), bits(), "a");
+
+        assertEquals(bits(5), graph.closure(id("a")).personalData);
+    }
+
+    @Test
+    public void diamondVisitsSharedCalleeOnce() {
+        CallGraph graph = new CallGraph(methods);
+        define(graph, "a", bits(), bits(), "b", "c");
+        define(graph, "b", bits(2), bits(), "d");
+        define(graph, "c", bits(), bits(), "d");
+        define(graph, "d", bits(0), bits(1));
+
+        assertEquals(bits(0, 2), graph.closure(id("a")).personalData);
+        assertEquals(bits(1), graph.closure(id("a")).dataRecipients);
+        assertEquals(bits(0), graph.closure(id("c")).personalData);
+    }
+
+    @Test
+    public void longChainDoesNotRecurse() {
+        CallGraph graph = new CallGraph(methods);
+        int length = 200_000;
+        for (int i = 0; i < length - 1; i++) {
+            define(graph, "m" + i, bits(), bits(), "m" + (i + 1));
+        }
+        define(graph, "m" + (length - 1), bits(9), bits());
+
+        assertEquals(bits(9), graph.closure(id("m0")).personalData);
+        assertEquals(bits(9), graph.closure(id("m" + (length / 2))).personalData);
+    }
+
+    @Test
+    public void interfaceMethodsReachTheirImplementations() {
+        CallGraph graph = new CallGraph(methods);
+        int service = methods.intern("Service#find()");
+        define(graph, "controller", bits(), bits(), "Service#find()");
+        graph.add(new MethodSummary(methods.intern("ServiceImpl#find()"), new int[]{service}, IntArrays.EMPTY,
+                bits(6), bits()));
+
+        assertEquals(bits(6), graph.closure(id("controller")).personalData);
+    }
+
+    @Test
+    public void undefinedCalleesAreIgnored() {
+        CallGraph graph = new CallGraph(methods);
+        define(graph, "a", bits(1), bits(), "unknown", "b");
+        define(graph, "b", bits(2), bits());
+
+        assertEquals(bits(1, 2), graph.closure(id("a")).personalData);
+        assertFalse(graph.contains(id("unknown")));
+    }
+
+    @Test
+    public void reachableAndReaches() {
+        CallGraph graph = new CallGraph(methods);
+        define(graph, "a", bits(), bits(), "b");
+        define(graph, "b", bits(), bits(), "a");
+        define(graph, "c", bits(), bits());
+
+        BitSet reachable = graph.reachable(Collections.singleton(id("a")));
+        assertTrue(reachable.get(id("a")));
+        assertTrue(reachable.get(id("b")));
+        assertFalse(reachable.get(id("c")));
+        assertTrue(graph.reaches(Collections.singleton(id("a")), bits(id("b"))));
+        assertFalse(graph.reaches(Collections.singleton(id("a")), bits(id("c"))));
+        assertFalse(graph.reaches(Collections.singleton(id("a")), bits()));
+    }
+
+    @Test
+    public void matchesDepthFirstSearchOnRandomGraphs() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            MethodTable table = new MethodTable();
+            CallGraph graph = new CallGraph(table);
+            int size = 50 + random.nextInt(200);
+            int[][] edges = new int[size][];
+            BitSet[] data = new BitSet[size];
+            for (int m = 0; m < size; m++) {
+                table.intern("m" + m);
+            }
+            for (int m = 0; m < size; m++) {
+                int[] callees = new int[random.nextInt(4)];
+                for (int i = 0; i < callees.length; i++) {
+                    callees[i] = random.nextInt(size);
+                }
+                edges[m] = IntArrays.sortedUnique(callees, callees.length);
+                data[m] = random.nextInt(5) == 0 ? bits(random.nextInt(16)) : bits();
+                graph.add(new MethodSummary(m, IntArrays.EMPTY, edges[m], data[m], bits()));
+            }
+            for (int m = 0; m < size; m++) {
+                assertEquals("round " + round + " method " + m, search(edges, data, m),
+                        graph.closure(m).personalData);
+            }
+        }
+    }
+
+    @Test
+    public void spilledGraphMatchesResidentGraph() throws IOException {
+        Path dir = Files.createTempDirectory("personaldataflow-spill");
+        Random random = new Random(7);
+        for (int budget : new int[]{0, 2048}) {
+            MethodTable table = new MethodTable();
+            CallGraph resident = new CallGraph(table);
+            try (SpillStore store = new SpillStore(budget, dir, 512)) {
+                CallGraph spilled = new CallGraph(table, store);
+                int size = 300;
+                for (int m = 0; m < size; m++) {
+                    table.intern("m" + m);
+                }
+                for (int m = 0; m < size; m++) {
+                    int[] callees = new int[random.nextInt(4)];
+                    for (int i = 0; i < callees.length; i++) {
+                        callees[i] = random.nextInt(size);
+                    }
+                    int[] interfaceMethods = random.nextInt(10) == 0
+                            ? new int[]{random.nextInt(size)} : IntArrays.EMPTY;
+                    MethodSummary summary = new MethodSummary(m, interfaceMethods,
+                            IntArrays.sortedUnique(callees, callees.length),
+                            random.nextInt(5) == 0 ? bits(random.nextInt(100)) : bits(),
+                            random.nextInt(7) == 0 ? bits(random.nextInt(10)) : bits());
+                    resident.add(summary);
+                    spilled.add(summary);
+                }
+
+                assertTrue(store.getSpilledMethods() > 0);
+                for (int m = 0; m < size; m++) {
+                    assertEquals("budget " + budget + " method " + m, resident.closure(m).personalData,
+                            spilled.closure(m).personalData);
+                    assertEquals("budget " + budget + " method " + m, resident.closure(m).dataRecipients,
+                            spilled.closure(m).dataRecipients);
+                }
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private static BitSet search(int[][] edges, BitSet[] data, int from) {
+        BitSet result = new BitSet();
+        BitSet seen = new BitSet();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(from);
+        seen.set(from);
+        while (!stack.isEmpty()) {
+            int m = stack.pop();
+            result.or(data[m]);
+            for (int callee : edges[m]) {
+                if (!seen.get(callee)) {
+                    seen.set(callee);
+                    stack.push(callee);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void define(CallGraph graph, String name, BitSet personalData, BitSet dataRecipients,
+                        String... callees) {
+        int[] dependencies = new int[callees.length];
+        for (int i = 0; i < callees.length; i++) {
+            dependencies[i] = methods.intern(callees[i]);
+        }
+        graph.add(new MethodSummary(methods.intern(name), IntArrays.EMPTY,
+                IntArrays.sortedUnique(dependencies, dependencies.length), personalData, dataRecipients));
+    }
+
+    private int id(String name) {
+        return methods.find(name);
+    }
+
+    private static BitSet bits(int... values) {
+        BitSet bits = new BitSet();
+        Arrays.stream(values).forEach(bits::set);
+        return bits;
+    }
+}
@@ -0,0 +1,103 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static Path path(String name) {
+        try {
+            return Paths.get(Fixtures.class.getResource("/fixtures/" + name).toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(name, e);
+        }
+    }
+
+    static List<Path> sources(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(path -> path.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    static List<Diagnostic<? extends JavaFileObject>> compile(Processor processor, Path classes, List<Path> sources,
+                                                              String... options) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Files.createDirectories(classes);
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-classpath", classes + File.pathSeparator + System.getProperty("java.class.path"),
+                "-d", classes.toString()));
+        arguments.addAll(Arrays.asList(options));
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, Locale.ROOT,
+                StandardCharsets.UTF_8)) {
+            Iterable<? extends JavaFileObject> units = files.getJavaFileObjectsFromFiles(
+                    sources.stream().map(Path::toFile).collect(Collectors.toList()));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, arguments, null, units);
+            task.setProcessors(Arrays.asList(processor));
+            if (!task.call()) {
+                throw new AssertionError(diagnostics.getDiagnostics().toString());
+            }
+        }
+        return diagnostics.getDiagnostics();
+    }
+
+    static List<String> warnings(Path root, List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        List<String> warnings = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == Diagnostic.Kind.WARNING && diagnostic.getSource() != null) {
+                Path source = root.relativize(Paths.get(diagnostic.getSource().toUri()));
+                warnings.add(source.toString().replace(File.separatorChar, '/') + ":" + diagnostic.getLineNumber()
+                        + ": " + diagnostic.getMessage(Locale.ROOT));
+            }
+        }
+        return warnings;
+    }
+
+    static Map<String, String> files(Path dir) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path file : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                files.put(dir.relativize(file).toString().replace(File.separatorChar, '/'),
+                        new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            }
+        }
+        return files;
+    }
+
+    static Path copy(Path from, Path to) throws IOException {
+        try (Stream<Path> walk = Files.walk(from)) {
+            for (Path file : walk.collect(Collectors.toList())) {
+                Path target = to.resolve(from.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(file, target);
+                }
+            }
+        }
+        return to;
+    }
+}
@@ -0,0 +1,80 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonWriterTest {
+
+    @Test
+    public void escapesQuotesAndBackslashes() throws IOException {
+        assertEquals("\"say \\\"hi\\\" C:\\\\dir\"", string("say \"hi\" C:\\dir"));
+    }
+
+    @Test
+    public void escapesControlCharacters() throws IOException {
+        assertEquals("\"a\\nb\\rc\\td\"", string("a\nb\rc\td"));
+        assertEquals("\"\\u0000\\u0001\\u001f\"", string("\u0000\u0001\u001f"));
+        assertEquals("\"\\u0008\"", string("\b"));
+    }
+
+    @Test
+    public void escapesLineAndParagraphSeparators() throws IOException {
+        assertEquals("\"a\\u2028b\\u2029c\"", string("a\u2028b\u2029c"));
+    }
+
+    @Test
+    public void keepsOtherCharacters() throws IOException {
+        String text = "K\u00e4ytt\u00e4j\u00e4 </script> \u20ac \uD83D\uDE00 /";
+        assertEquals("\"" + text + "\"", string(text));
+        assertEquals("\"\"", string(""));
+    }
+
+    @Test
+    public void escapesNames() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out, "")) {
+            json.beginObject().name("a\"b\n").value(1).endObject();
+        }
+        assertEquals("{\"a\\\"b\\n\":1}", out.toString());
+    }
+
+    @Test
+    public void writesCompactStructure() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out, "")) {
+            json.beginObject();
+            json.name("empty").beginArray().endArray();
+            json.name("values").stringArray(Arrays.asList("x", null));
+            json.name("flag").value(true);
+            json.name("none").nullValue();
+            json.endObject();
+        }
+        assertEquals("{\"empty\":[],\"values\":[\"x\",null],\"flag\":true,\"none\":null}", out.toString());
+    }
+
+    @Test
+    public void writesIndentedStructure() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out, "  ")) {
+            json.beginObject();
+            json.name("a").value(1);
+            json.name("b").beginArray().value("c").endArray();
+            json.name("d").beginObject().endObject();
+            json.endObject();
+        }
+        assertEquals("{\n  \"a\": 1,\n  \"b\": [\n    \"c\"\n  ],\n  \"d\": {}\n}\n", out.toString());
+    }
+
+    private static String string(String value) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out, "")) {
+            json.value(value);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,164 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import fi.geniem.gdpr.personaldataflow.MethodSummaryIndex.UnitSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MethodSummaryIndexTest {
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("personaldataflow-index");
+        file = dir.resolve("index.bin");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void missingFileLoadsEmpty() throws IOException {
+        MethodSummaryIndex index = load(new MethodTable(), new Numbering<>(), new Numbering<>());
+
+        assertTrue(index.units().isEmpty());
+    }
+
+    @Test
+    public void saveAndLoadRoundTrip() throws IOException {
+        MethodTable methods = new MethodTable();
+        Numbering<String> types = new Numbering<>();
+        Numbering<Transfer> transfers = new Numbering<>();
+        int controller = methods.intern("com.example.CustomerController#list()");
+        int service = methods.intern("com.example.CustomerService#findAll()");
+        int impl = methods.intern("com.example.CustomerServiceImpl#findAll()");
+        BitSet personalData = new BitSet();
+        personalData.set(types.number("com.example.Customer"));
+        BitSet dataRecipients = new BitSet();
+        dataRecipients.set(transfers.number(new Transfer("https://example.com/policy", "crm")));
+        List<MethodSummary> summaries = new ArrayList<>();
+        summaries.add(new MethodSummary(controller, IntArrays.EMPTY, new int[]{service}, new BitSet(),
+                new BitSet()));
+        summaries.add(new MethodSummary(impl, new int[]{service}, IntArrays.EMPTY, personalData, dataRecipients));
+        byte[] hash = MethodSummaryIndex.hash("class CustomerController {}");
+
+        UnitSummary saved = new UnitSummary("CustomerController.java", hash, "com.example.CustomerController",
+                new LinkedHashSet<>(Collections.singleton(controller)), summaries);
+        saved.referencedTypes.addAll(Arrays.asList("com.example.Customer", "com.example.CustomerService"));
+        saved.referenceHash = MethodSummaryIndex.hash("com.example.Customer @PersonalData @Document");
+
+        MethodSummaryIndex index = load(methods, types, transfers);
+        index.put(saved);
+        index.save();
+
+        MethodTable loadedMethods = new MethodTable();
+        Numbering<String> loadedTypes = new Numbering<>();
+        Numbering<Transfer> loadedTransfers = new Numbering<>();
+        loadedMethods.intern("com.example.Unrelated#shiftsIds()");
+        loadedTypes.number("com.example.Unrelated");
+        UnitSummary unit = load(loadedMethods, loadedTypes, loadedTransfers).get("CustomerController.java");
+
+        assertNotNull(unit);
+        assertArrayEquals(hash, unit.hash);
+        assertEquals("com.example.CustomerController", unit.controller);
+        assertEquals(saved.referencedTypes, unit.referencedTypes);
+        assertArrayEquals(saved.referenceHash, unit.referenceHash);
+        assertEquals(Collections.singleton(loadedMethods.find("com.example.CustomerController#list()")),
+                unit.entryPoints);
+        assertEquals(2, unit.methods.size());
+        MethodSummary first = unit.methods.get(0);
+        assertEquals("com.example.CustomerController#list()", loadedMethods.name(first.method));
+        assertEquals(Collections.singletonList("com.example.CustomerService#findAll()"),
+                names(loadedMethods, first.dependencies));
+        assertTrue(first.personalData.isEmpty());
+        MethodSummary second = unit.methods.get(1);
+        assertEquals("com.example.CustomerServiceImpl#findAll()", loadedMethods.name(second.method));
+        assertEquals(Collections.singletonList("com.example.CustomerService#findAll()"),
+                names(loadedMethods, second.interfaceMethods));
+        assertEquals(Collections.singletonList("com.example.Customer"),
+                loadedTypes.collect(second.personalData, new ArrayList<>()));
+        assertEquals(Collections.singletonList(new Transfer("https://example.com/policy", "crm")),
+                loadedTransfers.collect(second.dataRecipients, new ArrayList<>()));
+    }
+
+    @Test
+    public void otherVersionLoadsEmpty() throws IOException {
+        MethodTable methods = new MethodTable();
+        MethodSummaryIndex index = load(methods, new Numbering<>(), new Numbering<>());
+        index.put(new UnitSummary("A.java", MethodSummaryIndex.hash("a"), "A", Collections.emptySet(),
+                Collections.emptyList()));
+        index.save();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[7]++;
+        Files.write(file, bytes);
+
+        assertTrue(load(methods, new Numbering<>(), new Numbering<>()).units().isEmpty());
+    }
+
+    @Test
+    public void truncatedFileLoadsEmpty() throws IOException {
+        MethodTable methods = new MethodTable();
+        MethodSummaryIndex index = load(methods, new Numbering<>(), new Numbering<>());
+        index.put(new UnitSummary("A.java", MethodSummaryIndex.hash("a"), "A", Collections.emptySet(),
+                Collections.emptyList()));
+        index.put(new UnitSummary("B.java", MethodSummaryIndex.hash("b"), "B", Collections.emptySet(),
+                Collections.emptyList()));
+        index.save();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        MethodSummaryIndex loaded = load(methods, new Numbering<>(), new Numbering<>());
+        assertTrue(loaded.units().isEmpty());
+        assertNull(loaded.get("A.java"));
+    }
+
+    @Test
+    public void foreignFileLoadsEmpty() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0xCAFEBABE);
+            out.writeInt(4);
+        }
+
+        assertTrue(load(new MethodTable(), new Numbering<>(), new Numbering<>()).units().isEmpty());
+    }
+
+    private MethodSummaryIndex load(MethodTable methods, Numbering<String> types, Numbering<Transfer> transfers)
+            throws IOException {
+        return MethodSummaryIndex.load(file, methods, types, transfers);
+    }
+
+    private static List<String> names(MethodTable methods, int[] ids) {
+        List<String> names = new ArrayList<>();
+        for (int id : ids) {
+            names.add(methods.name(id));
+        }
+        return names;
+    }
+}
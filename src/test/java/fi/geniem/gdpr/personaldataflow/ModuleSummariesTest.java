@@ -0,0 +1,177 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ModuleSummariesTest {
+
+    private Path dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("personaldataflow-modules");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void exportedSummariesAreFoundByName() throws IOException {
+        Module upstream = new Module();
+        upstream.define("com.acme.Repo#find()", "com.acme.Customer", null, "com.acme.Db#query()");
+        upstream.define("com.acme.Mail#send()", null, new Transfer("https://mail.example/p", "mail"));
+        upstream.define("com.acme.Internal#helper()", "com.acme.Secret", null);
+        Path classes = dir.resolve("upstream");
+        upstream.export(classes, "com.acme.Repo#find()", "com.acme.Mail#send()");
+
+        Module downstream = new Module();
+        downstream.methods.intern("com.example.Local#shiftsIds()");
+        downstream.types.number("com.example.Local");
+        ModuleSummaries summaries = downstream.summaries(classes.toUri().toURL());
+
+        MethodSummary find = summaries.find(downstream.methods.intern("com.acme.Repo#find()"));
+        assertNotNull(find);
+        assertEquals(Collections.singletonList("com.acme.Db#query()"), names(downstream.methods, find.dependencies));
+        assertEquals(Collections.singletonList("com.acme.Customer"),
+                downstream.types.collect(find.personalData, new ArrayList<>()));
+        MethodSummary send = summaries.find(downstream.methods.intern("com.acme.Mail#send()"));
+        assertEquals(Collections.singletonList(new Transfer("https://mail.example/p", "mail")),
+                downstream.transfers.collect(send.dataRecipients, new ArrayList<>()));
+        assertNull(summaries.find(downstream.methods.intern("com.acme.Internal#helper()")));
+        assertNull(summaries.find(downstream.methods.intern("com.acme.Db#query()")));
+        assertNull(summaries.find(downstream.methods.intern("com.acme.Unknown#method()")));
+        assertEquals(1, summaries.getFiles());
+        assertEquals(2, summaries.getHits());
+    }
+
+    @Test
+    public void summariesOfTheSameMethodAreMerged() throws IOException {
+        Module first = new Module();
+        first.define("com.acme.Service#run()", "com.acme.Customer", null, "com.acme.A#a()");
+        Path classes = dir.resolve("first");
+        first.export(classes, "com.acme.Service#run()");
+        Module second = new Module();
+        second.define("com.acme.Service#run()", "com.acme.Employee", new Transfer("https://crm.example/p", "crm"),
+                "com.acme.B#b()", "com.acme.A#a()");
+        Path jar = dir.resolve("second.jar");
+        second.exportJar(jar, "com.acme.Service#run()");
+
+        Module downstream = new Module();
+        ModuleSummaries summaries = downstream.summaries(classes.toUri().toURL(), jar.toUri().toURL());
+        MethodSummary run = summaries.find(downstream.methods.intern("com.acme.Service#run()"));
+
+        assertEquals(Arrays.asList("com.acme.A#a()", "com.acme.B#b()"), sorted(names(downstream.methods,
+                run.dependencies)));
+        assertEquals(Arrays.asList("com.acme.Customer", "com.acme.Employee"),
+                sorted(downstream.types.collect(run.personalData, new ArrayList<>())));
+        assertEquals(1, run.dataRecipients.cardinality());
+        assertEquals(2, summaries.getFiles());
+    }
+
+    @Test
+    public void foreignResourcesAreIgnored() throws IOException {
+        Path classes = dir.resolve("foreign");
+        Path resource = classes.resolve(ModuleSummaries.RESOURCE);
+        Files.createDirectories(resource.getParent());
+        Files.write(resource, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        Module downstream = new Module();
+        ModuleSummaries summaries = downstream.summaries(classes.toUri().toURL());
+
+        assertNull(summaries.find(downstream.methods.intern("com.acme.Service#run()")));
+        assertEquals(0, summaries.getFiles());
+    }
+
+    private static List<String> names(MethodTable methods, int[] ids) {
+        List<String> names = new ArrayList<>();
+        for (int id : ids) {
+            names.add(methods.name(id));
+        }
+        return names;
+    }
+
+    private static List<String> sorted(List<String> values) {
+        Collections.sort(values);
+        return values;
+    }
+
+    private static final class Module {
+
+        final MethodTable methods = new MethodTable();
+        final Numbering<String> types = new Numbering<>();
+        final Numbering<Transfer> transfers = new Numbering<>();
+        final CallGraph graph = new CallGraph(methods);
+
+        void define(String name, String type, Transfer transfer, String... callees) {
+            BitSet personalData = new BitSet();
+            if (type != null) {
+                personalData.set(types.number(type));
+            }
+            BitSet dataRecipients = new BitSet();
+            if (transfer != null) {
+                dataRecipients.set(transfers.number(transfer));
+            }
+            int[] dependencies = new int[callees.length];
+            for (int i = 0; i < callees.length; i++) {
+                dependencies[i] = methods.intern(callees[i]);
+            }
+            graph.add(new MethodSummary(methods.intern(name), IntArrays.EMPTY,
+                    IntArrays.sortedUnique(dependencies, dependencies.length), personalData, dataRecipients));
+        }
+
+        void export(Path classes, String... names) throws IOException {
+            Path resource = classes.resolve(ModuleSummaries.RESOURCE);
+            Files.createDirectories(resource.getParent());
+            try (OutputStream out = Files.newOutputStream(resource)) {
+                ModuleSummaries.write(out, graph, exported(names), types, transfers);
+            }
+        }
+
+        void exportJar(Path jar, String... names) throws IOException {
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                out.putNextEntry(new ZipEntry(ModuleSummaries.RESOURCE));
+                ModuleSummaries.write(out, graph, exported(names), types, transfers);
+                out.closeEntry();
+            }
+        }
+
+        ModuleSummaries summaries(URL... classpath) {
+            return new ModuleSummaries(classpath, methods, types, transfers);
+        }
+
+        private BitSet exported(String... names) {
+            BitSet exported = new BitSet();
+            for (String name : names) {
+                exported.set(methods.find(name));
+            }
+            return exported;
+        }
+    }
+}
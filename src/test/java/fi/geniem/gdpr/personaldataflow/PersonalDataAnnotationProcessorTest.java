@@ -0,0 +1,87 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class PersonalDataAnnotationProcessorTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void warningsMatchBaseline() throws IOException {
+        Path fixture = Fixtures.path("shop");
+        List<String> expected = Files.readAllLines(fixture.resolve("expected-warnings.txt"), StandardCharsets.UTF_8);
+
+        assertEquals(expected, validate(fixture));
+    }
+
+    @Test
+    public void warningLimitIsPerSourceFile() throws IOException {
+        Path fixture = Fixtures.path("shop");
+
+        List<String> warnings = validate(fixture, "-Apersonaldataflow.maxWarnings=1");
+
+        Map<String, Integer> unsafe = new TreeMap<>();
+        List<String> summaries = new ArrayList<>();
+        for (String warning : warnings) {
+            String source = warning.substring(0, warning.indexOf(':'));
+            if (warning.contains(": Unsafe @PersonalData: ")) {
+                unsafe.merge(source, 1, Integer::sum);
+            } else {
+                summaries.add(source);
+            }
+        }
+        assertEquals(5, unsafe.size());
+        for (Map.Entry<String, Integer> source : unsafe.entrySet()) {
+            assertEquals(source.getKey(), 1, (long) source.getValue());
+        }
+        assertEquals(Arrays.asList("com/acme/shop/app/service/CustomerService.java",
+                "com/acme/shop/app/service/CustomerServiceImpl.java",
+                "com/acme/shop/app/web/CustomerController.java"), summaries);
+    }
+
+    @Test
+    public void declarationsInOtherUnits() throws IOException {
+        Path fixture = Fixtures.path("declarations");
+        List<String> expected = Files.readAllLines(fixture.resolve("expected-warnings.txt"), StandardCharsets.UTF_8);
+
+        assertEquals(expected, validate(fixture));
+    }
+
+    @Test
+    public void compiledDeclarationsWarnLikeSourceDeclarations() throws IOException {
+        Path fixture = Fixtures.path("declarations");
+        Path classes = temp.newFolder().toPath();
+        List<Path> declarations = new ArrayList<>(Fixtures.sources(fixture.resolve("com/acme/model")));
+        declarations.addAll(Fixtures.sources(fixture.resolve("com/acme/registry")));
+        Fixtures.compile(new PersonalDataAnnotationProcessor(), classes, declarations);
+        List<String> expected = new ArrayList<>();
+        for (String warning : Files.readAllLines(fixture.resolve("expected-warnings.txt"), StandardCharsets.UTF_8)) {
+            if (warning.startsWith("com/acme/use/")) {
+                expected.add(warning);
+            }
+        }
+
+        assertEquals(expected, Fixtures.warnings(fixture, Fixtures.compile(new PersonalDataAnnotationProcessor(),
+                classes, Fixtures.sources(fixture.resolve("com/acme/use")))));
+    }
+
+    private List<String> validate(Path fixture, String... options) throws IOException {
+        return Fixtures.warnings(fixture, Fixtures.compile(new PersonalDataAnnotationProcessor(),
+                temp.newFolder().toPath(), Fixtures.sources(fixture), options));
+    }
+}
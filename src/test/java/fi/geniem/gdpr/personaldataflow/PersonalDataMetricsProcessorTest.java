@@ -0,0 +1,162 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PersonalDataMetricsProcessorTest {
+
+    private static final String PRODUCT_CONTROLLER = "com.acme.shop.app.web.ProductController";
+    private static final String CUSTOMER_CONTROLLER = "com.acme.shop.app.web.CustomerController";
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void demandMatchesEager() throws IOException {
+        Path fixture = Fixtures.path("shop");
+
+        assertEquals(purposes(fixture), purposes(fixture, "-Apersonaldataflow.demand"));
+    }
+
+    @Test
+    public void memoryBudgetMatchesEager() throws IOException {
+        Path fixture = Fixtures.path("shop");
+
+        assertEquals(purposes(fixture), purposes(fixture, "-Apersonaldataflow.memoryBudget=0",
+                "-Apersonaldataflow.spillDir=" + temp.newFolder()));
+    }
+
+    @Test
+    public void demandWithMemoryBudgetMatchesEager() throws IOException {
+        Path fixture = Fixtures.path("shop");
+
+        assertEquals(purposes(fixture), purposes(fixture, "-Apersonaldataflow.demand",
+                "-Apersonaldataflow.memoryBudget=0", "-Apersonaldataflow.spillDir=" + temp.newFolder()));
+    }
+
+    @Test
+    public void overridesAndInterfaceDispatch() throws IOException {
+        Path manifest = temp.getRoot().toPath().resolve("purposes.ndjson");
+        Fixtures.compile(new PersonalDataMetricsProcessor(), temp.newFolder().toPath(),
+                Fixtures.sources(Fixtures.path("shop")), "-Apersonaldataflow.manifest=" + manifest);
+
+        Map<String, PurposeManifest.Purpose> purposes = new HashMap<>();
+        try (PurposeManifest controllers = PurposeManifest.open(manifest)) {
+            while (controllers.hasNext()) {
+                for (PurposeManifest.Purpose purpose : controllers.next().getPurposes()) {
+                    purposes.put(purpose.getName(), purpose);
+                }
+            }
+        }
+
+        PurposeManifest.Purpose product = purposes.get(PRODUCT_CONTROLLER + "#get(java.lang.String)");
+        assertEquals(Collections.emptyList(), product.getData());
+        assertEquals(1, product.getTransfers().size());
+        assertEquals("crm \"x\"", product.getTransfers().get(0).getRecipientId());
+        assertEquals("https://crm.example/p", product.getTransfers().get(0).getPolicyURL());
+        assertEquals(Collections.singletonList("com.acme.shop.app.model.Customer"),
+                purposes.get(PRODUCT_CONTROLLER + "#buyers()").getData());
+        PurposeManifest.Purpose customer = purposes.get(CUSTOMER_CONTROLLER + "#get(java.lang.String)");
+        assertEquals(Collections.singletonList("com.acme.shop.app.model.Customer"), customer.getData());
+        assertEquals(1, customer.getTransfers().size());
+        assertEquals("mailgun", customer.getTransfers().get(0).getRecipientId());
+        assertEquals(Collections.singletonList("com.acme.shop.app.model.Admin"),
+                purposes.get(CUSTOMER_CONTROLLER + "#admins()").getData());
+    }
+
+    @Test
+    public void filerMatchesOutputDir() throws IOException {
+        Path fixture = Fixtures.path("shop");
+        Path classes = temp.newFolder().toPath();
+        Fixtures.compile(new PersonalDataMetricsProcessor(), classes, Fixtures.sources(fixture),
+                "-Apersonaldataflow.filer");
+
+        assertEquals(purposes(fixture), Fixtures.files(classes.resolve("META-INF/personaldataflow")));
+    }
+
+    @Test
+    public void unchangedIndexReplaysSameOutput() throws IOException {
+        Path sources = Fixtures.copy(Fixtures.path("shop"), temp.getRoot().toPath().resolve("shop"));
+        Path index = temp.getRoot().toPath().resolve("index.bin");
+        Path output = temp.newFolder().toPath();
+        Path classes = temp.newFolder().toPath();
+        Map<String, String> clean = purposes(sources);
+
+        build(classes, output, index, Fixtures.sources(sources));
+        build(classes, output, index, Fixtures.sources(sources));
+
+        assertEquals(clean, Fixtures.files(output));
+    }
+
+    @Test
+    public void annotationChangeInvalidatesReferencingUnits() throws IOException {
+        Path sources = Fixtures.copy(Fixtures.path("shop"), temp.getRoot().toPath().resolve("shop"));
+        Path index = temp.getRoot().toPath().resolve("index.bin");
+        Path output = temp.newFolder().toPath();
+        Path classes = temp.newFolder().toPath();
+        build(classes, output, index, Fixtures.sources(sources));
+        Map<String, String> before = Fixtures.files(output);
+
+        annotateProduct(sources);
+        build(classes, output, index, Fixtures.sources(sources));
+
+        Map<String, String> after = Fixtures.files(output);
+        assertEquals(purposes(sources), after);
+        assertNotEquals(before, after);
+        assertFalse(before.get(PRODUCT_CONTROLLER + ".json").contains("\"com.acme.shop.app.model.Product\""));
+        assertTrue(after.get(PRODUCT_CONTROLLER + ".json").contains("\"com.acme.shop.app.model.Product\""));
+    }
+
+    @Test
+    public void annotationChangeInvalidatesUnitsNotRecompiled() throws IOException {
+        Path sources = Fixtures.copy(Fixtures.path("shop"), temp.getRoot().toPath().resolve("shop"));
+        Path index = temp.getRoot().toPath().resolve("index.bin");
+        Path output = temp.newFolder().toPath();
+        Path classes = temp.newFolder().toPath();
+        build(classes, output, index, Fixtures.sources(sources));
+
+        Path product = annotateProduct(sources);
+        build(classes, output, index, Collections.singletonList(product));
+
+        assertEquals(purposes(sources), Fixtures.files(output));
+    }
+
+    private Map<String, String> purposes(Path fixture, String... options) throws IOException {
+        Path output = temp.newFolder().toPath();
+        List<String> arguments = new ArrayList<>(Arrays.asList(options));
+        arguments.add("-Apersonaldataflow.outputDir=" + output);
+        Fixtures.compile(new PersonalDataMetricsProcessor(), temp.newFolder().toPath(), Fixtures.sources(fixture),
+                arguments.toArray(new String[0]));
+        return Fixtures.files(output);
+    }
+
+    private static void build(Path classes, Path output, Path index, List<Path> sources) throws IOException {
+        Fixtures.compile(new PersonalDataMetricsProcessor(), classes, sources,
+                "-Apersonaldataflow.outputDir=" + output, "-Apersonaldataflow.index=" + index);
+    }
+
+    private static Path annotateProduct(Path sources) throws IOException {
+        Path product = sources.resolve("com/acme/shop/app/model/Product.java");
+        String text = new String(Files.readAllBytes(product), StandardCharsets.UTF_8);
+        Files.write(product, text.replace("@Document\n", "@fi.geniem.gdpr.personaldataflow.PersonalData @Document\n")
+                .getBytes(StandardCharsets.UTF_8));
+        return product;
+    }
+}
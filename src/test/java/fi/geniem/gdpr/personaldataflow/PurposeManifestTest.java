@@ -0,0 +1,98 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PurposeManifestTest {
+
+    private static final String QUOTED_TYPE = "com.example.\"Quoted\"\\Type";
+    private static final String RECIPIENT = "crm \"x\"\n\t\u00e9\u2603";
+    private static final String POLICY = "https://example.com/policy?a=1&b=\\2";
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void readsWhatManifestWriterWrote() throws IOException {
+        MethodTable methods = new MethodTable();
+        Numbering<String> types = new Numbering<>();
+        Numbering<Transfer> transfers = new Numbering<>();
+        CallGraph graph = new CallGraph(methods);
+        int list = methods.intern("com.example.CustomerController#list(java.lang.String)");
+        int export = methods.intern("com.example.CustomerController#export()");
+        int orders = methods.intern("com.example.OrderController#orders()");
+        int service = methods.intern("com.example.Service#load()");
+        graph.add(new MethodSummary(list, IntArrays.EMPTY, new int[]{service}, new BitSet(), new BitSet()));
+        graph.add(new MethodSummary(export, IntArrays.EMPTY, IntArrays.EMPTY, bits(types.number(QUOTED_TYPE)),
+                bits(transfers.number(new Transfer(POLICY, RECIPIENT)))));
+        graph.add(new MethodSummary(service, IntArrays.EMPTY, IntArrays.EMPTY,
+                bits(types.number("com.example.Customer")), new BitSet()));
+        graph.add(new MethodSummary(orders, IntArrays.EMPTY, IntArrays.EMPTY, new BitSet(), new BitSet()));
+        OutputBuffer output = new OutputBuffer();
+        PurposeWriter purposes = new PurposeWriter(graph, types, transfers, output, "");
+        Path file = temp.getRoot().toPath().resolve("purposes.ndjson");
+        try (ManifestWriter manifest = new ManifestWriter(file)) {
+            purposes.write("com.example.CustomerController", Arrays.asList(list, export));
+            manifest.add(output);
+            purposes.write("com.example.OrderController", Collections.singletonList(orders));
+            manifest.add(output);
+        }
+
+        List<PurposeManifest.Controller> controllers = new ArrayList<>();
+        try (PurposeManifest manifest = PurposeManifest.open(file)) {
+            while (manifest.hasNext()) {
+                controllers.add(manifest.next());
+            }
+        }
+
+        assertEquals(2, controllers.size());
+        PurposeManifest.Controller customers = controllers.get(0);
+        assertEquals("com.example.CustomerController", customers.getName());
+        assertEquals(Arrays.asList(QUOTED_TYPE, "com.example.Customer"), customers.getData());
+        assertEquals(1, customers.getTransfers().size());
+        assertEquals(RECIPIENT, customers.getTransfers().get(0).getRecipientId());
+        assertEquals(POLICY, customers.getTransfers().get(0).getPolicyURL());
+        assertEquals(2, customers.getPurposes().size());
+        PurposeManifest.Purpose first = customers.getPurposes().get(0);
+        assertEquals("com.example.CustomerController#export()", first.getName());
+        assertEquals(Collections.singletonList(QUOTED_TYPE), first.getData());
+        assertEquals(RECIPIENT, first.getTransfers().get(0).getRecipientId());
+        PurposeManifest.Purpose second = customers.getPurposes().get(1);
+        assertEquals("com.example.CustomerController#list(java.lang.String)", second.getName());
+        assertEquals(Collections.singletonList("com.example.Customer"), second.getData());
+        assertEquals(Collections.emptyList(), second.getTransfers());
+        PurposeManifest.Controller orderController = controllers.get(1);
+        assertEquals("com.example.OrderController", orderController.getName());
+        assertEquals(Collections.emptyList(), orderController.getData());
+        assertEquals(1, orderController.getPurposes().size());
+        assertEquals("com.example.OrderController#orders()", orderController.getPurposes().get(0).getName());
+    }
+
+    @Test
+    public void emptyManifestHasNoControllers() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("empty.ndjson");
+        new ManifestWriter(file).close();
+
+        try (PurposeManifest manifest = PurposeManifest.open(file)) {
+            assertFalse(manifest.hasNext());
+        }
+    }
+
+    private static BitSet bits(int bit) {
+        BitSet bits = new BitSet();
+        bits.set(bit);
+        return bits;
+    }
+}
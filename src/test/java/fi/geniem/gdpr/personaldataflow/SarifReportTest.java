@@ -0,0 +1,96 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SarifReportTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void resultsMatchWarnings() throws IOException {
+        Path fixture = Fixtures.path("shop");
+        Path file = temp.getRoot().toPath().resolve("personaldataflow.sarif");
+        List<String> warnings = Fixtures.warnings(fixture, Fixtures.compile(new PersonalDataAnnotationProcessor(),
+                temp.newFolder().toPath(), Fixtures.sources(fixture), "-Apersonaldataflow.sarif=" + file));
+
+        Map<?, ?> run = (Map<?, ?>) list(read(file).get("runs")).get(0);
+        Map<?, ?> driver = (Map<?, ?>) ((Map<?, ?>) run.get("tool")).get("driver");
+        Map<?, ?> rule = (Map<?, ?>) list(driver.get("rules")).get(0);
+        assertEquals("unsafe-personal-data", rule.get("id"));
+        List<String> results = new ArrayList<>();
+        for (Object element : list(run.get("results"))) {
+            Map<?, ?> result = (Map<?, ?>) element;
+            assertEquals("unsafe-personal-data", result.get("ruleId"));
+            assertEquals("warning", result.get("level"));
+            Map<?, ?> location = (Map<?, ?>) ((Map<?, ?>) list(result.get("locations")).get(0)).get("physicalLocation");
+            Map<?, ?> region = (Map<?, ?>) location.get("region");
+            long startLine = (Long) region.get("startLine");
+            long endLine = (Long) region.get("endLine");
+            assertTrue(startLine <= endLine);
+            assertTrue((Long) region.get("startColumn") > 0);
+            assertTrue(startLine < endLine || (Long) region.get("startColumn") < (Long) region.get("endColumn"));
+            String uri = (String) ((Map<?, ?>) location.get("artifactLocation")).get("uri");
+            Path source = fixture.relativize(Paths.get(URI.create(uri)));
+            results.add(source.toString().replace('\\', '/') + ":" + startLine + ": "
+                    + ((Map<?, ?>) result.get("message")).get("text"));
+        }
+
+        assertEquals(Files.readAllLines(fixture.resolve("expected-warnings.txt"), StandardCharsets.UTF_8),
+                results);
+        assertEquals(warnings, results);
+    }
+
+    private static Map<?, ?> read(Path file) throws IOException {
+        try (JsonReader json = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            return (Map<?, ?>) value(json);
+        }
+    }
+
+    private static Object value(JsonReader json) throws IOException {
+        switch (json.peek()) {
+            case BEGIN_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<>();
+                json.beginObject();
+                while (json.hasNext()) {
+                    object.put(json.nextName(), value(json));
+                }
+                json.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                List<Object> array = new ArrayList<>();
+                json.beginArray();
+                while (json.hasNext()) {
+                    array.add(value(json));
+                }
+                json.endArray();
+                return array;
+            case NUMBER:
+                return json.nextLong();
+            case BOOLEAN:
+                return json.nextBoolean();
+            default:
+                return json.nextString();
+        }
+    }
+
+    private static List<?> list(Object value) {
+        return (List<?>) value;
+    }
+}
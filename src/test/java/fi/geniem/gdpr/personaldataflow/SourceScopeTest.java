@@ -0,0 +1,93 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SourceScopeTest {
+
+    @Test
+    public void emptyScopeIncludesEverything() throws IOException {
+        SourceScope scope = new SourceScope(null, null, null);
+
+        assertTrue(scope.includes(unit("/work/src/main/java/com/acme/A.java", "com.acme")));
+        assertTrue(scope.inPackages("anything"));
+        assertFalse(scope.hasPackages());
+    }
+
+    @Test
+    public void includeGlobs() throws IOException {
+        SourceScope scope = new SourceScope("**/src/main/java/**", null, null);
+
+        assertTrue(scope.includes(unit("/work/app/src/main/java/com/acme/A.java", "com.acme")));
+        assertFalse(scope.includes(unit("/work/app/src/test/java/com/acme/ATest.java", "com.acme")));
+    }
+
+    @Test
+    public void excludesWinOverIncludes() throws IOException {
+        SourceScope scope = new SourceScope("**/*.java", "**/generated/**, **/*Test.java", null);
+
+        assertTrue(scope.includes(unit("/work/src/com/acme/A.java", "com.acme")));
+        assertFalse(scope.includes(unit("/work/generated/com/acme/B.java", "com.acme")));
+        assertFalse(scope.includes(unit("/work/src/com/acme/ATest.java", "com.acme")));
+    }
+
+    @Test
+    public void bracesAreNotSplitOnCommas() throws IOException {
+        SourceScope scope = new SourceScope("**/{web,service}/*.java", null, null);
+
+        assertTrue(scope.includes(unit("/work/com/acme/web/A.java", "com.acme.web")));
+        assertTrue(scope.includes(unit("/work/com/acme/service/B.java", "com.acme.service")));
+        assertFalse(scope.includes(unit("/work/com/acme/model/C.java", "com.acme.model")));
+    }
+
+    @Test
+    public void packageRootsStopAtBoundaries() {
+        SourceScope scope = new SourceScope(null, null, "com.acme, org.example.shop");
+
+        assertTrue(scope.hasPackages());
+        assertTrue(scope.inPackages("com.acme"));
+        assertTrue(scope.inPackages("com.acme.web"));
+        assertTrue(scope.inPackages("com.acme.web.Controller"));
+        assertTrue(scope.inPackages("com.acme.Outer$Inner"));
+        assertTrue(scope.inPackages("com.acme#method"));
+        assertTrue(scope.inPackages("org.example.shop.Cart"));
+        assertFalse(scope.inPackages("com.acmecorp"));
+        assertFalse(scope.inPackages("com.acmecorp.web"));
+        assertFalse(scope.inPackages("com"));
+        assertFalse(scope.inPackages("org.example"));
+    }
+
+    @Test
+    public void packageRootsApplyToUnits() throws IOException {
+        SourceScope scope = new SourceScope(null, null, "com.acme");
+
+        assertTrue(scope.includes(unit("/work/com/acme/web/A.java", "com.acme.web")));
+        assertFalse(scope.includes(unit("/work/com/acmecorp/B.java", "com.acmecorp")));
+        assertFalse(scope.includes(unit("/work/C.java", null)));
+    }
+
+    private static CompilationUnitTree unit(String path, String packageName) throws IOException {
+        String source = (packageName != null ? "package " + packageName + ";\n" : "") + "class A {}\n";
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("file://" + path), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavacTask task = (JavacTask) compiler.getTask(null, null, null, null, null, Collections.singleton(file));
+        return task.parse().iterator().next();
+    }
+}
@@ -0,0 +1,115 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpillStoreTest {
+
+    private Path dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("personaldataflow-spill");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        Files.delete(dir);
+    }
+
+    @Test
+    public void readsBackAcrossSealedAndOpenSegments() throws IOException {
+        try (SpillStore store = new SpillStore(0, dir, 64)) {
+            int count = 200;
+            for (int m = 0; m < count; m++) {
+                store.write(m, dependencies(m), personalData(m), dataRecipients(m));
+                if (m % 7 == 0) {
+                    assertMethod(store, m);
+                    assertMethod(store, m / 2);
+                }
+            }
+
+            assertTrue(store.getSegments() > 1);
+            assertEquals(count, store.getSpilledMethods());
+            for (int m = count - 1; m >= 0; m--) {
+                assertMethod(store, m);
+            }
+        }
+        assertEquals(0, files());
+    }
+
+    @Test
+    public void copiesDependenciesAtOffset() throws IOException {
+        try (SpillStore store = new SpillStore(0, dir, 64)) {
+            store.write(3, new int[]{7, 8, 9}, new BitSet(), null);
+            int[] target = new int[5];
+
+            assertEquals(3, store.copyDependencies(3, target, 2));
+            assertArrayEquals(new int[]{0, 0, 7, 8, 9}, target);
+            assertEquals(new BitSet(), store.dataRecipients(3));
+        }
+    }
+
+    @Test
+    public void rewrittenMethodReadsLatestRecord() throws IOException {
+        try (SpillStore store = new SpillStore(0, dir, 64)) {
+            store.write(1, new int[]{2}, bits(1), bits());
+            for (int m = 10; m < 30; m++) {
+                store.write(m, dependencies(m), personalData(m), dataRecipients(m));
+            }
+            store.write(1, new int[]{3, 4}, bits(200), bits(5));
+
+            assertArrayEquals(new int[]{3, 4}, store.dependencies(1));
+            assertEquals(bits(200), store.personalData(1));
+            assertEquals(bits(5), store.dataRecipients(1));
+        }
+    }
+
+    private static void assertMethod(SpillStore store, int m) {
+        assertEquals(dependencies(m).length, store.dependencyCount(m));
+        assertArrayEquals(dependencies(m), store.dependencies(m));
+        assertEquals(personalData(m), store.personalData(m));
+        assertEquals(dataRecipients(m), store.dataRecipients(m));
+    }
+
+    private static int[] dependencies(int m) {
+        int[] dependencies = new int[m % 5];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencies[i] = m + i + 1;
+        }
+        return dependencies;
+    }
+
+    private static BitSet personalData(int m) {
+        return m % 3 == 0 ? bits(m % 130) : bits();
+    }
+
+    private static BitSet dataRecipients(int m) {
+        return m % 4 == 0 ? bits(m % 70, 1) : bits();
+    }
+
+    private static BitSet bits(int... values) {
+        BitSet bits = new BitSet();
+        for (int value : values) {
+            bits.set(value);
+        }
+        return bits;
+    }
+
+    private long files() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import org.junit.Test;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TypeFingerprintsTest {
+
+    private static final Pattern CLASS_NAME = Pattern.compile("class (\\w+)");
+    private static final String PRODUCT = "package shop;\n"
+            + "@org.springframework.data.mongodb.core.mapping.Document\n"
+            + "public class Product extends Item { public String title; public String title() { return title; } }\n";
+    private static final String ITEM = "package shop;\npublic class Item { public long id; }\n";
+    private static final String CLIENT = "package shop;\npublic class Client {\n"
+            + "    @fi.geniem.gdpr.personaldataflow.PersonalDataTransfer(dataRecipientId = \"crm\", policyURL = \"\")\n"
+            + "    public void send(Object o) { }\n}\n";
+
+    @Test
+    public void unchangedTypesHaveSameDigest() {
+        assertArrayEquals(digest("shop.Product", PRODUCT, ITEM), digest("shop.Product", PRODUCT, ITEM));
+    }
+
+    @Test
+    public void methodBodiesDoNotChangeDigest() {
+        assertArrayEquals(digest("shop.Product", PRODUCT, ITEM),
+                digest("shop.Product", PRODUCT.replace("return title;", "return \"x\" + title;"), ITEM));
+    }
+
+    @Test
+    public void personalDataAnnotationChangesDigest() {
+        assertDiffers(digest("shop.Product", PRODUCT, ITEM), digest("shop.Product",
+                PRODUCT.replace("public class", "@fi.geniem.gdpr.personaldataflow.PersonalData public class"), ITEM));
+    }
+
+    @Test
+    public void fieldTypeChangesDigest() {
+        assertDiffers(digest("shop.Product", PRODUCT, ITEM),
+                digest("shop.Product", PRODUCT.replace("public String title;", "public Item title;"), ITEM));
+    }
+
+    @Test
+    public void supertypeAnnotationChangesDigest() {
+        assertDiffers(digest("shop.Product", PRODUCT, ITEM), digest("shop.Product", PRODUCT,
+                ITEM.replace("public class", "@fi.geniem.gdpr.personaldataflow.PersonalData public class")));
+    }
+
+    @Test
+    public void transferChangesDigest() {
+        assertDiffers(digest("shop.Client", CLIENT), digest("shop.Client", CLIENT.replace("\"crm\"", "\"mail\"")));
+    }
+
+    @Test
+    public void missingTypeHasDigest() {
+        assertDiffers(digest("shop.Missing", ITEM), digest("shop.Item", ITEM));
+    }
+
+    private static void assertDiffers(byte[] expected, byte[] actual) {
+        assertFalse(Arrays.equals(expected, actual));
+    }
+
+    private static byte[] digest(String type, String... sources) {
+        List<JavaFileObject> units = new ArrayList<>();
+        for (String source : sources) {
+            Matcher name = CLASS_NAME.matcher(source);
+            assertTrue(name.find());
+            units.add(new SimpleJavaFileObject(URI.create("string:///shop/" + name.group(1) + ".java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            });
+        }
+        DigestProcessor processor = new DigestProcessor(type);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, Arrays.asList("-proc:only",
+                "-classpath", System.getProperty("java.class.path")), null, units);
+        task.setProcessors(Collections.singletonList(processor));
+        assertTrue(task.call());
+        return processor.digest;
+    }
+
+    @SupportedAnnotationTypes("*")
+    private static final class DigestProcessor extends AbstractProcessor {
+
+        private final String type;
+        private byte[] digest;
+
+        DigestProcessor(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            if (digest == null) {
+                digest = new TypeFingerprints(processingEnv.getElementUtils(), processingEnv.getTypeUtils())
+                        .digest(Collections.singleton(type));
+            }
+            return false;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package fi.geniem.gdpr.personaldataflow;
+
+import com.sun.source.util.JavacTask;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TypeMentionsTest {
+
+    private static final String SOURCE = String.join("\n",
+            "package fixture;",
+            "import java.util.*;",
+            "class Customer {}",
+            "class Fixture<T extends Customer, R extends Comparable<R>, O> {",
+            "    Map<String, List<Customer>> nested;",
+            "    List<? extends Customer> upper;",
+            "    Comparator<? super Customer> lower;",
+            "    List<?> unbounded;",
+            "    Customer[][] array;",
+            "    List<Customer[]> listOfArrays;",
+            "    T variable;",
+            "    List<T> listOfVariable;",
+            "    R recursive;",
+            "    O unboundedVariable;",
+            "    String plain;",
+            "    int primitive;",
+            "    <U extends Customer & Runnable> void intersection(List<U> values) {}",
+            "}");
+
+    private final TypeMentions mentions = new TypeMentions();
+    private Types types;
+    private TypeElement fixture;
+
+    @Before
+    public void compile() throws IOException {
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///fixture/Fixture.java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return SOURCE;
+            }
+        };
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavacTask task = (JavacTask) compiler.getTask(null, null, null, Arrays.asList("-proc:none"), null,
+                Collections.singleton(file));
+        task.analyze();
+        types = task.getTypes();
+        fixture = task.getElements().getTypeElement("fixture.Fixture");
+    }
+
+    @Test
+    public void nestedArguments() {
+        assertEquals(Arrays.asList("java.lang.String", "java.util.List", "fixture.Customer"),
+                names(mentions.arguments(field("nested"))));
+        assertEquals(Arrays.asList("java.util.Map", "java.lang.String", "java.util.List", "fixture.Customer"),
+                names(mentions.all(field("nested"))));
+    }
+
+    @Test
+    public void wildcards() {
+        assertEquals(Collections.singletonList("fixture.Customer"), names(mentions.arguments(field("upper"))));
+        assertEquals(Collections.singletonList("fixture.Customer"), names(mentions.arguments(field("lower"))));
+        assertEquals(Collections.emptyList(), names(mentions.arguments(field("unbounded"))));
+        assertEquals(Arrays.asList("java.util.List", "fixture.Customer"), names(mentions.all(field("upper"))));
+    }
+
+    @Test
+    public void arrays() {
+        assertEquals(Collections.singletonList("fixture.Customer"), names(mentions.arguments(field("array"))));
+        assertEquals(Collections.singletonList("fixture.Customer"),
+                names(mentions.arguments(field("listOfArrays"))));
+    }
+
+    @Test
+    public void typeVariablesUseTheirBounds() {
+        assertEquals(Collections.singletonList("fixture.Customer"), names(mentions.all(field("variable"))));
+        assertEquals(Collections.singletonList("fixture.Customer"),
+                names(mentions.arguments(field("listOfVariable"))));
+        assertEquals(Collections.singletonList("java.lang.Object"),
+                names(mentions.all(field("unboundedVariable"))));
+    }
+
+    @Test
+    public void recursiveBoundTerminates() {
+        assertEquals(Collections.singletonList("java.lang.Comparable"), names(mentions.all(field("recursive"))));
+        assertEquals(Collections.singletonList("java.lang.Comparable"), names(mentions.all(field("recursive"))));
+    }
+
+    @Test
+    public void intersectionBounds() {
+        ExecutableElement method = (ExecutableElement) member("intersection", ElementKind.METHOD);
+        TypeMirror values = method.getParameters().get(0).asType();
+
+        assertEquals(Arrays.asList("fixture.Customer", "java.lang.Runnable"), names(mentions.arguments(values)));
+    }
+
+    @Test
+    public void typesWithoutArguments() {
+        assertEquals(Collections.emptyList(), names(mentions.arguments(field("plain"))));
+        assertEquals(Collections.singletonList("java.lang.String"), names(mentions.all(field("plain"))));
+        assertEquals(Collections.emptyList(), names(mentions.all(field("primitive"))));
+        assertEquals(Collections.emptyList(), names(mentions.all(null)));
+    }
+
+    @Test
+    public void walksAreMemoized() {
+        mentions.all(field("nested"));
+        long walks = mentions.getWalks();
+        mentions.all(field("nested"));
+        mentions.arguments(field("nested"));
+
+        assertEquals(walks, mentions.getWalks());
+        assertTrue(mentions.getHits() >= 2);
+    }
+
+    private TypeMirror field(String name) {
+        return member(name, ElementKind.FIELD).asType();
+    }
+
+    private Element member(String name, ElementKind kind) {
+        for (Element member : fixture.getEnclosedElements()) {
+            if (member.getKind() == kind && member.getSimpleName().contentEquals(name)) {
+                return member;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    private List<String> names(List<TypeMirror> mentioned) {
+        List<String> names = new ArrayList<>();
+        for (TypeMirror type : mentioned) {
+            names.add(((TypeElement) types.asElement(type)).getQualifiedName().toString());
+        }
+        return names;
+    }
+}
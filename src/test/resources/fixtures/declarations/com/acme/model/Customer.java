@@ -0,0 +1,5 @@
+package com.acme.model;
+import fi.geniem.gdpr.personaldataflow.PersonalData;
+import org.springframework.data.mongodb.core.mapping.Document;
+@PersonalData @Document
+public class Customer { public String name; }
@@ -0,0 +1,9 @@
+package com.acme.registry;
+import com.acme.model.Customer;
+import java.util.*;
+public class Registry {
+    public static List<Customer> customers = new ArrayList<>();
+    public static Map<String, Customer> byName = new HashMap<>();
+    public List<Customer> own = new ArrayList<>();
+    public Customer[] array = new Customer[0];
+}
@@ -0,0 +1,9 @@
+package com.acme.use;
+import com.acme.registry.Registry;
+public class Audit extends Registry {
+    void run() {
+        Use.print(own);
+        Use.print(array);
+        Use.print(super.own);
+    }
+}
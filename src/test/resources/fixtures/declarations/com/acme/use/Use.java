@@ -0,0 +1,13 @@
+package com.acme.use;
+import com.acme.registry.Registry;
+import static com.acme.registry.Registry.customers;
+public class Use {
+    void run(Registry registry) {
+        print(customers);
+        print(Registry.byName);
+        print(registry.own);
+        print(registry.array);
+        print(this);
+    }
+    static void print(Object value) { }
+}
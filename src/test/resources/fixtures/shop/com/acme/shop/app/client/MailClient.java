@@ -0,0 +1,8 @@
+package com.acme.shop.app.client;
+import fi.geniem.gdpr.personaldataflow.PersonalDataTransfer;
+public class MailClient {
+    @PersonalDataTransfer(dataRecipientId = "mailgun", policyURL = "https://mailgun.example/privacy")
+    public void send(String to) { }
+    @PersonalDataTransfer(dataRecipientId = "crm \"x\"", policyURL = "https://crm.example/p")
+    public void sync(Object o) { }
+}
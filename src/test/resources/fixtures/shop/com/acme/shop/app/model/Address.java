@@ -0,0 +1,4 @@
+package com.acme.shop.app.model;
+import fi.geniem.gdpr.personaldataflow.PersonalData;
+@PersonalData
+public class Address { public String street; }
@@ -0,0 +1,2 @@
+package com.acme.shop.app.model;
+public class Admin extends BaseUser { public int level; }
@@ -0,0 +1,5 @@
+package com.acme.shop.app.model;
+import fi.geniem.gdpr.personaldataflow.PersonalData;
+import org.springframework.data.mongodb.core.mapping.Document;
+@PersonalData @Document
+public class Customer { public String name; public Address address; public String getName() { return name; } }
@@ -0,0 +1,4 @@
+package com.acme.shop.app.model;
+import org.springframework.data.mongodb.core.mapping.Document;
+@Document
+public class Product { public String title; }
@@ -0,0 +1,8 @@
+package com.acme.shop.app.service;
+import com.acme.shop.app.model.*;
+import java.util.*;
+public interface CustomerService {
+    Customer find(String id);
+    List<Admin> admins();
+    void notify(Customer c);
+}
@@ -0,0 +1,12 @@
+package com.acme.shop.app.service;
+import com.acme.shop.app.model.*;
+import com.acme.shop.app.client.MailClient;
+import java.util.*;
+public class CustomerServiceImpl implements CustomerService {
+    private final MailClient mail = new MailClient();
+    public Customer find(String id) { Customer c = new Customer(); c.name = id; return helper(c); }
+    private Customer helper(Customer c) { return recurse(c, 3); }
+    private Customer recurse(Customer c, int n) { return n == 0 ? c : recurse(c, n - 1); }
+    public List<Admin> admins() { List<Admin> a = new ArrayList<>(); Admin[] arr = new Admin[1]; return a; }
+    public void notify(Customer c) { mail.send(c.getName()); }
+}
@@ -0,0 +1,9 @@
+package com.acme.shop.app.service;
+import com.acme.shop.app.model.*;
+import com.acme.shop.app.client.MailClient;
+import java.util.*;
+public abstract class ProductService {
+    public abstract Product get(String id);
+    public Map<String, List<Customer>> buyers() { return new HashMap<>(); }
+    public void sync(Object o) { new MailClient().sync(o); }
+}
@@ -0,0 +1,5 @@
+package com.acme.shop.app.service;
+import com.acme.shop.app.model.*;
+public class ProductServiceImpl extends ProductService {
+    public Product get(String id) { Product p = new Product(); sync(p); return p; }
+}
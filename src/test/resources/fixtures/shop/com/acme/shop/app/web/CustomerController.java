@@ -0,0 +1,13 @@
+package com.acme.shop.app.web;
+import com.acme.shop.app.model.*;
+import com.acme.shop.app.service.*;
+import org.springframework.web.bind.annotation.RequestMapping;
+import java.util.*;
+public class CustomerController {
+    private CustomerService service = new CustomerServiceImpl();
+    private static List<Customer> cache = new ArrayList<>();
+    @RequestMapping("/c") public Customer get(String id) { Customer c = service.find(id); service.notify(c); return c; }
+    @RequestMapping("/a") public List<Admin> admins() { return service.admins(); }
+    @RequestMapping("/n") public String ping() { return "pong"; }
+    public void log(Customer c) { System.out.println(c.name); String s = String.valueOf(c); Object o = (Customer) c; }
+}
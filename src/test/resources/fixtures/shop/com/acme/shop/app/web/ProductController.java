@@ -0,0 +1,10 @@
+package com.acme.shop.app.web;
+import com.acme.shop.app.model.*;
+import com.acme.shop.app.service.*;
+import org.springframework.web.bind.annotation.RequestMapping;
+import java.util.*;
+public class ProductController {
+    private ProductService service = new ProductServiceImpl();
+    @RequestMapping("/p") public Product get(String id) { return service.get(id); }
+    @RequestMapping("/b") public Map<String, List<Customer>> buyers() { return service.buyers(); }
+}
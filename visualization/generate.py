@@ -32,6 +32,19 @@ def parse_purpose_files(folder):
         with open(file) as json_file:
             purposes.append(json.load(json_file))
     
+    return number_purposes(purposes)
+
+
+def parse_manifest(manifest):
+    purposes = []
+    with open(manifest) as lines:
+        for line in lines:
+            if line.strip():
+                purposes.append(json.loads(line))
+    return number_purposes(purposes)
+
+
+def number_purposes(purposes):
     i = 1
     result = []
     for item in purposes:
@@ -225,12 +238,18 @@ def render_results(folder, purpose_dict):
 
 def main():
     parser = argparse.ArgumentParser(description='Purpose Visualizer.', usage="python3 generate.py <folder> [<args>]")
-    parser.add_argument("folder", type=str, help="Which folder to scan for Purpose files.");
+    parser.add_argument("folder", type=str, help="Which folder to scan for Purpose files, or a purpose manifest file.");
     args = parser.parse_args(sys.argv[1:2])
     folder = args.folder
+    if os.path.isfile(folder):
+        purpose_data = parse_manifest(folder)
+        folder = os.path.dirname(os.path.abspath(folder))
+    else:
+        purpose_data = None
     if not folder.endswith('/'):
         folder = folder + '/'
-    purpose_data = parse_purpose_files(folder)
+    if purpose_data is None:
+        purpose_data = parse_purpose_files(folder)
     render_results(folder, purpose_data)    
     
 if __name__ == '__main__':